@@ -7,6 +7,7 @@ import android.content.Context;
 import com.sophiemarceauqu.lib_audio.mediaplayer.core.AudioController;
 import com.sophiemarceauqu.lib_audio.mediaplayer.core.MusicService;
 import com.sophiemarceauqu.lib_audio.mediaplayer.db.GreenDaoHelper;
+import com.sophiemarceauqu.lib_audio.mediaplayer.effect.AudioEffectManager;
 import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
 import com.sophiemarceauqu.lib_audio.mediaplayer.view.MusicPlayerActivity;
 
@@ -39,6 +40,12 @@ public class AudioHelper {
         MusicPlayerActivity.start(activity);
     }
 
+    //临时试听，如好友动态中的分享音频，不会覆盖主播放队列
+    public static void previewAudio(Activity activity, AudioBean bean) {
+        AudioController.getInstance().preview(bean);
+        MusicPlayerActivity.start(activity);
+    }
+
     public static void pauseAudio() {
         AudioController.getInstance().pause();
     }
@@ -46,4 +53,9 @@ public class AudioHelper {
     public static void resumeAudio() {
         AudioController.getInstance().resume();
     }
+
+    //音效设置入口
+    public static AudioEffectManager getAudioEffectManager() {
+        return AudioEffectManager.getInstance();
+    }
 }
@@ -1,28 +1,210 @@
 package com.sophiemarceauqu.lib_audio.app.service;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.alibaba.android.arouter.facade.annotation.Route;
 import com.sophiemarceau_qu.lib_base.service.audio.AudioService;
+import com.sophiemarceau_qu.lib_base.service.audio.model.AudioInfo;
+import com.sophiemarceau_qu.lib_base.service.audio.model.AudioState;
 import com.sophiemarceauqu.lib_audio.mediaplayer.core.AudioController;
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioProgressEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
+
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * AudioService实现类
+ * AudioController只能在主线程使用，所有操作都post到主线程，调用方线程不会被阻塞
  */
 @Route(path = "/audio/audio_service")
 public class AudioServiceImpl implements AudioService {
+    private Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private CopyOnWriteArrayList<ProgressListener> mProgressListeners = new CopyOnWriteArrayList<>();
+
     @Override
     public void pauseAudio() {
-        AudioController.getInstance().pause();
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                AudioController.getInstance().pause();
+            }
+        });
     }
 
     @Override
     public void resumeAudio() {
-        AudioController.getInstance().resume();
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                AudioController.getInstance().resume();
+            }
+        });
+    }
+
+    @Override
+    public void enqueue(final List<AudioInfo> audios, final boolean playNow, final ResultCallback callback) {
+        //先在调用方线程转换好，主线程只做一次批量添加
+        final List<AudioBean> beans = new ArrayList<>(audios.size());
+        for (AudioInfo info : audios) {
+            beans.add(toAudioBean(info));
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int first = AudioController.getInstance().addAudios(beans);
+                    if (playNow && first >= 0) {
+                        AudioController.getInstance().setPlayIndex(first);
+                    }
+                    notifySuccess(callback);
+                } catch (RuntimeException e) {
+                    notifyFailure(callback, e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void remove(final List<String> audioIds, final ResultCallback callback) {
+        final List<String> ids = new ArrayList<>(audioIds);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    AudioController.getInstance().removeAudios(ids);
+                    notifySuccess(callback);
+                } catch (RuntimeException e) {
+                    notifyFailure(callback, e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void play(final String audioId, final ResultCallback callback) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                int index = AudioController.getInstance().indexOf(audioId);
+                if (index < 0) {
+                    if (callback != null) callback.onFailure("歌曲不在播放队列中");
+                    return;
+                }
+                try {
+                    AudioController.getInstance().setPlayIndex(index);
+                    notifySuccess(callback);
+                } catch (RuntimeException e) {
+                    notifyFailure(callback, e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void queryState(final StateCallback callback) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                AudioController controller = AudioController.getInstance();
+                AudioState state = new AudioState();
+                state.status = controller.getStatusName();
+                state.position = controller.getNowPlayTime();
+                state.duration = controller.getTotalPlayTime();
+                state.queueSize = controller.getQueue().size();
+                state.queueIndex = controller.getQueueIndex();
+                state.session = controller.getSessionName();
+                if (state.queueSize > 0) {
+                    state.current = toAudioInfo(controller.getNowPlaying());
+                }
+                callback.onState(state);
+            }
+        });
+    }
+
+    @Override
+    public void queryQueue(final QueueCallback callback) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                ArrayList<AudioBean> queue = AudioController.getInstance().getQueue();
+                List<AudioInfo> result = new ArrayList<>(queue.size());
+                for (AudioBean bean : queue) {
+                    result.add(toAudioInfo(bean));
+                }
+                callback.onQueue(result);
+            }
+        });
+    }
+
+    @Override
+    public void addProgressListener(final ProgressListener listener) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mProgressListeners.addIfAbsent(listener) && mProgressListeners.size() == 1) {
+                    //有了第一个监听者才订阅进度事件
+                    EventBus.getDefault().register(AudioServiceImpl.this);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void removeProgressListener(final ProgressListener listener) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mProgressListeners.remove(listener) && mProgressListeners.isEmpty()) {
+                    EventBus.getDefault().unregister(AudioServiceImpl.this);
+                }
+            }
+        });
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAudioProgressEvent(AudioProgressEvent event) {
+        String status = event.mStatus == null ? null : event.mStatus.name();
+        for (ProgressListener listener : mProgressListeners) {
+            listener.onProgress(status, event.progress, event.maxLength);
+        }
     }
 
     @Override
     public void init(Context context) {
 
     }
+
+    private static void notifySuccess(ResultCallback callback) {
+        if (callback != null) callback.onSuccess();
+    }
+
+    private static void notifyFailure(ResultCallback callback, RuntimeException e) {
+        if (callback != null) callback.onFailure(e.getMessage());
+    }
+
+    private static AudioBean toAudioBean(AudioInfo info) {
+        return new AudioBean(info.id, info.url, info.name, info.author, info.album,
+                info.albumInfo, info.albumPic, info.totalTime);
+    }
+
+    private static AudioInfo toAudioInfo(AudioBean bean) {
+        AudioInfo info = new AudioInfo();
+        info.id = bean.id;
+        info.url = bean.mUrl;
+        info.name = bean.name;
+        info.author = bean.author;
+        info.album = bean.album;
+        info.albumInfo = bean.albumInfo;
+        info.albumPic = bean.albumPic;
+        info.totalTime = bean.totalTime;
+        return info;
+    }
 }
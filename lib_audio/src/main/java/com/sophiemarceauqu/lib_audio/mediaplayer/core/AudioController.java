@@ -1,18 +1,24 @@
 package com.sophiemarceauqu.lib_audio.mediaplayer.core;
 
 import com.sophiemarceauqu.lib_audio.mediaplayer.db.GreenDaoHelper;
+import com.sophiemarceauqu.lib_audio.mediaplayer.effect.AudioEffectManager;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioCompleteEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioErrorEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioFavouriteEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioPlayModeEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.exception.AudioQueueEmptyException;
 import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
+import com.sophiemarceauqu.lib_audio.mediaplayer.model.PlaySession;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -27,11 +33,15 @@ public class AudioController {
         LOOP, RANDOM, REPEAT
     }
 
-    private AudioPlayer mAudioPlayer;//核心播放器
+    private IAudioPlayer mAudioPlayer;//核心播放器
     //播放队列，不能为空，不设置主动抛错
-    private ArrayList<AudioBean> mQueue = new ArrayList<>();//歌曲队列
+    private ArrayList<AudioBean> mQueue;//歌曲队列，始终指向当前会话的队列
     private PlayMode mPlayMode = PlayMode.LOOP;//当前播放歌曲索引
     private int mQueueIndex = 0;//循环模式
+    private Random mRandom = new Random();//随机模式复用，避免每次切歌都创建
+    //所有播放会话，切换会话只切换引用
+    private HashMap<String, PlaySession> mSessions = new HashMap<>();
+    private PlaySession mSession;//当前会话
 
     //单例方法
     private static class SingletonHolder {
@@ -43,8 +53,41 @@ public class AudioController {
     }
 
     private AudioController() {
+        this(new AudioPlayer());
+    }
+
+    /**
+     * 可注入播放器，供JVM单元测试和benchmark使用
+     *
+     * @param audioPlayer
+     */
+    AudioController(IAudioPlayer audioPlayer) {
         EventBus.getDefault().register(this);
-        mAudioPlayer = new AudioPlayer();
+        mAudioPlayer = audioPlayer;
+        mSession = obtainSession(PlaySession.MAIN);
+        mQueue = mSession.queue;
+    }
+
+    private PlaySession obtainSession(String name) {
+        PlaySession session = mSessions.get(name);
+        if (session == null) {
+            session = new PlaySession(name, PlaySession.PREVIEW.equals(name));
+            mSessions.put(name, session);
+        }
+        return session;
+    }
+
+    //离开当前会话前记下索引和播放位置
+    private void saveSessionState() {
+        mSession.queueIndex = mQueueIndex;
+        mSession.position = mAudioPlayer.getCurrentPosition();
+    }
+
+    //切换到目标会话，不重建任何队列
+    private void attachSession(PlaySession session) {
+        mSession = session;
+        mQueue = session.queue;
+        mQueueIndex = session.queueIndex;
     }
 
     private void addCustomAudio(int index, AudioBean bean) {
@@ -62,6 +105,10 @@ public class AudioController {
         mAudioPlayer.load(bean);
     }
 
+    private void load(AudioBean bean, int startPosition) {
+        mAudioPlayer.load(bean, startPosition);
+    }
+
     /**
      * 获取播放器当前状态
      *
@@ -77,7 +124,7 @@ public class AudioController {
                 mQueueIndex = (mQueueIndex + 1) % mQueue.size();
                 return getPlaying(mQueueIndex);
             case RANDOM:
-                mQueueIndex = new Random().nextInt(mQueue.size()) % mQueue.size();
+                mQueueIndex = mRandom.nextInt(mQueue.size());
                 return getPlaying(mQueueIndex);
             case REPEAT:
                 return getPlaying(mQueueIndex);
@@ -91,7 +138,7 @@ public class AudioController {
                 mQueueIndex = (mQueueIndex + mQueue.size() - 1) % mQueue.size();
                 return getPlaying(mQueueIndex);
             case RANDOM:
-                mQueueIndex = new Random().nextInt(mQueue.size()) % mQueue.size();
+                mQueueIndex = mRandom.nextInt(mQueue.size());
                 return getPlaying(mQueueIndex);
             case REPEAT:
                 return getPlaying(mQueueIndex);
@@ -125,6 +172,15 @@ public class AudioController {
         return CustomMediaPlayer.Status.PAUSED == getStatus();
     }
 
+    /**
+     * 对外提供播放器状态名称
+     *
+     * @return
+     */
+    public String getStatusName() {
+        return getStatus().name();
+    }
+
     public ArrayList<AudioBean> getQueue() {
         return mQueue == null ? new ArrayList<AudioBean>() : mQueue;
     }
@@ -168,6 +224,83 @@ public class AudioController {
         }
     }
 
+    /**
+     * 批量添加到队列尾部，已在队列中的歌曲忽略，整批只做一次去重和一次拷贝
+     *
+     * @return 本批实际添加的第一首的位置，没有添加返回-1
+     */
+    public int addAudios(List<AudioBean> beans) {
+        HashSet<String> ids = new HashSet<>(mQueue.size() + beans.size());
+        for (AudioBean bean : mQueue) {
+            ids.add(bean.id);
+        }
+        ArrayList<AudioBean> added = new ArrayList<>(beans.size());
+        for (AudioBean bean : beans) {
+            if (ids.add(bean.id)) {
+                added.add(bean);
+            }
+        }
+        if (added.isEmpty()) {
+            return -1;
+        }
+        int first = mQueue.size();
+        mQueue.addAll(added);
+        return first;
+    }
+
+    /**
+     * 批量从队列移除，正在播放的歌曲被移除时播放移除后同位置的歌曲
+     *
+     * @param audioIds
+     */
+    public void removeAudios(Collection<String> audioIds) {
+        HashSet<String> ids = new HashSet<>(audioIds);
+        ArrayList<AudioBean> kept = new ArrayList<>(mQueue.size());
+        int newIndex = 0;
+        boolean currentRemoved = false;
+        for (int i = 0; i < mQueue.size(); i++) {
+            AudioBean bean = mQueue.get(i);
+            if (ids.contains(bean.id)) {
+                if (i == mQueueIndex) {
+                    currentRemoved = true;
+                }
+            } else {
+                if (i < mQueueIndex) {
+                    newIndex++;
+                }
+                kept.add(bean);
+            }
+        }
+        if (kept.size() == mQueue.size()) {
+            return;
+        }
+        //原地替换，保持会话对队列的引用
+        mQueue.clear();
+        mQueue.addAll(kept);
+        if (mQueue.isEmpty()) {
+            mQueueIndex = 0;
+            pause();
+        } else if (currentRemoved) {
+            setPlayIndex(Math.min(newIndex, mQueue.size() - 1));
+        } else {
+            mQueueIndex = newIndex;
+        }
+    }
+
+    /**
+     * 队列中歌曲的位置
+     *
+     * @return 不在队列中返回-1
+     */
+    public int indexOf(String audioId) {
+        for (int i = 0; i < mQueue.size(); i++) {
+            if (mQueue.get(i).id.equals(audioId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public void setPlayIndex(int index) {
         if (mQueue == null) {
             throw new AudioQueueEmptyException("当前播放队列为空，请先设置队列！");
@@ -195,17 +328,85 @@ public class AudioController {
         return mQueueIndex;
     }
 
+    /**
+     * 当前会话名称
+     */
+    public String getSessionName() {
+        return mSession.name;
+    }
+
+    /**
+     * 切换播放会话，恢复目标会话的歌曲和播放位置
+     *
+     * @param name 会话名称，如{@link PlaySession#MAIN}
+     */
+    public void switchSession(String name) {
+        if (mSession.name.equals(name)) {
+            return;
+        }
+        saveSessionState();
+        PlaySession previous = mSession;
+        attachSession(obtainSession(name));
+        if (previous.ephemeral) {
+            //临时会话离开即丢弃
+            mSessions.remove(previous.name);
+        }
+        if (!mQueue.isEmpty()) {
+            load(getPlaying(mQueueIndex), mSession.position);
+        } else {
+            //目标会话还没有歌曲(如电台)，停下上一个会话的歌，不会在空队列上切歌
+            pause();
+        }
+    }
+
+    /**
+     * 设置指定会话的队列并切换过去播放，不影响其它会话的队列
+     *
+     * @param name
+     * @param queue
+     * @param queueIndex
+     */
+    public void playInSession(String name, ArrayList<AudioBean> queue, int queueIndex) {
+        if (!mSession.name.equals(name)) {
+            saveSessionState();
+        }
+        PlaySession session = obtainSession(name);
+        //queue可能就是该会话自己的队列，先拷贝再清空
+        ArrayList<AudioBean> copy = new ArrayList<>(queue);
+        session.queue.clear();
+        session.queue.addAll(copy);
+        session.queueIndex = queueIndex;
+        session.position = 0;
+        attachSession(session);
+        play();
+    }
+
+    /**
+     * 临时试听单曲，不改动主队列，播完自动回到主队列原来的位置
+     *
+     * @param bean
+     */
+    public void preview(AudioBean bean) {
+        ArrayList<AudioBean> queue = new ArrayList<>(1);
+        queue.add(bean);
+        playInSession(PlaySession.PREVIEW, queue, 0);
+    }
+
     /**
      * 添加/移除到收藏
      */
     public void changeFavourite() {
-        if (null!= GreenDaoHelper.selectFavourite(getNowPlaying())){
+        AudioBean bean = getNowPlaying();
+        if (bean == null) {
+            return;
+        }
+        if (null!= GreenDaoHelper.selectFavourite(bean)){
             //已收藏，移除
-            GreenDaoHelper.removeFavourite(getNowPlaying());
+            GreenDaoHelper.removeFavourite(bean);
             EventBus.getDefault().post(new AudioFavouriteEvent(false));
         }else{
             //未收藏，添加收藏
-            GreenDaoHelper.addFavourite(getNowPlaying());
+            GreenDaoHelper.addFavourite(bean);
             EventBus.getDefault().post(new AudioFavouriteEvent(true));
         }
     }
@@ -230,17 +431,23 @@ public class AudioController {
     }
 
     /**
-     * 加载next index歌曲
+     * 加载next index歌曲，当前会话队列为空时不处理
      */
     public void next() {
+        if (mQueue.isEmpty()) {
+            return;
+        }
         AudioBean bean = getNextPlaying();
         load(bean);
     }
 
     /**
-     * 加载previous index歌曲
+     * 加载previous index歌曲，当前会话队列为空时不处理
      */
     public void previous() {
+        if (mQueue.isEmpty()) {
+            return;
+        }
         AudioBean bean = getPreviousPlaying();
         load(bean);
     }
@@ -256,15 +463,27 @@ public class AudioController {
      * 对外提供获取总播放时间
      */
     public int getTotalPlayTime() {
-        return mAudioPlayer.getCurrentPosition();
+        return mAudioPlayer.getDuration();
+    }
+
+    /**
+     * 对外提供跳转到指定播放位置
+     *
+     * @param position 毫秒
+     */
+    public void seekTo(int position) {
+        mAudioPlayer.seekTo(position);
     }
 
     /**
      * 对外提供的获取当前歌曲信息
      *
-     * @return
+     * @return 当前会话队列为空(如切到还没有歌曲的电台)时返回null
      */
     public AudioBean getNowPlaying() {
+        if (mQueue.isEmpty()) {
+            return null;
+        }
         return getPlaying(mQueueIndex);
     }
 
@@ -278,18 +497,29 @@ public class AudioController {
 
     public void release() {
         mAudioPlayer.release();
+        AudioEffectManager.getInstance().release();
         EventBus.getDefault().unregister(this);
     }
 
     //播放完毕时间处理
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onAudioCompleteEvent(AudioCompleteEvent event) {
+        if (mSession.ephemeral && mPlayMode != PlayMode.REPEAT && mQueueIndex == mQueue.size() - 1) {
+            //临时会话播完，回到主队列
+            switchSession(PlaySession.MAIN);
+            return;
+        }
         next();
     }
 
     //播放出错事件处理
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onAudioErrorEvent(AudioErrorEvent event) {
+        if (mSession.ephemeral) {
+            //临时会话(试听单曲)出错时切歌只会重复加载同一首，直接回到主队列
+            switchSession(PlaySession.MAIN);
+            return;
+        }
         next();
     }
 
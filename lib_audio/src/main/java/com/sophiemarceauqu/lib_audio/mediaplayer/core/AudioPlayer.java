@@ -11,12 +11,14 @@ import android.os.PowerManager;
 import android.util.Log;
 
 import com.sophiemarceauqu.lib_audio.app.AudioHelper;
+import com.sophiemarceauqu.lib_audio.mediaplayer.effect.AudioEffectManager;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioCompleteEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioErrorEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioLoadEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioPauseEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioProgressEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioReleaseEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioSeekEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioStartEvent;
 import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
 
@@ -30,7 +32,8 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
         MediaPlayer.OnBufferingUpdateListener,
         MediaPlayer.OnPreparedListener,
         MediaPlayer.OnErrorListener,
-        AudioFocusManager.AudioFocusListener {
+        AudioFocusManager.AudioFocusListener,
+        IAudioPlayer {
 
     private static final String TAG = "AudioPlayer";
     private static final int TIME_MSG = 0x01;
@@ -42,13 +45,15 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
     //焦点监听器
     private AudioFocusManager mAudioFocusManager;
     private boolean isPauseByFoucusLossTransient;
+    //准备完毕后从此位置开始播放，用于恢复会话进度
+    private int mStartPosition;
     private Handler mHandler = new Handler(Looper.getMainLooper()) {
         @Override
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case TIME_MSG:
-                    //暂停也要更新进度，防止UI不同步，只不过进度一直一样
-                    if (getStatus() == CustomMediaPlayer.Status.PAUSED || getStatus() == CustomMediaPlayer.Status.PAUSED) {
+                    //只在播放中轮询进度，暂停时在pause()中补发一次，避免暂停期间空转
+                    if (getStatus() == CustomMediaPlayer.Status.STATED) {
                         //UI类型处理事件
                         EventBus.getDefault().post(new AudioProgressEvent(getStatus(), getCurrentPosition(), getDuration()));
                         sendEmptyMessageDelayed(TIME_MSG, TIME_INVAL);
@@ -71,6 +76,12 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
         mMediaPlayer.setOnPreparedListener(this);
         mMediaPlayer.setOnBufferingUpdateListener(this);
         mMediaPlayer.setOnErrorListener(this);
+        //播放器重建时沿用之前的audio session，已绑定的音效无需重建
+        int audioSessionId = AudioEffectManager.getInstance().getAudioSessionId();
+        if (audioSessionId != 0) {
+            mMediaPlayer.setAudioSessionId(audioSessionId);
+        }
+        AudioEffectManager.getInstance().attach(mMediaPlayer.getAudioSessionId());
 
         //初始化wifilock
         mWifiLock = ((WifiManager) AudioHelper.getContext().getApplicationContext().getSystemService(Context.WIFI_SERVICE)).createWifiLock(WifiManager.WIFI_MODE_FULL, TAG);
@@ -91,15 +102,30 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
         mWifiLock.acquire();
         //对外发送start事件
         EventBus.getDefault().post(new AudioStartEvent());
+        //开始轮询进度
+        mHandler.removeMessages(TIME_MSG);
+        mHandler.sendEmptyMessage(TIME_MSG);
     }
 
     /**
      * 对外提供加载方法
      * @param audioBean
      */
+    @Override
     public void load(AudioBean audioBean){
+        load(audioBean, 0);
+    }
+
+    /**
+     * 加载并从指定位置开始播放
+     * @param audioBean
+     * @param startPosition 毫秒
+     */
+    @Override
+    public void load(AudioBean audioBean, int startPosition){
         try{
             //正常加载逻辑
+            mStartPosition = startPosition;
             mMediaPlayer.reset();
             mMediaPlayer.setDataSource(audioBean.mUrl);
             mMediaPlayer.prepareAsync();
@@ -114,6 +140,7 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
     /**
      * 对外提供暂停方法
      */
+    @Override
     public void pause(){
         if (getStatus() == CustomMediaPlayer.Status.STATED){
             mMediaPlayer.pause();
@@ -127,26 +154,45 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
             }
             //发送暂停事件
             EventBus.getDefault().post(new AudioPauseEvent());
+            //同步一次暂停时的进度
+            EventBus.getDefault().post(new AudioProgressEvent(getStatus(), getCurrentPosition(), getDuration()));
         }
     }
 
     /**
      * 对外提供恢复
      */
+    @Override
     public void resume(){
-        if (getStatus() == CustomMediaPlayer.Status.STATED){
+        if (getStatus() == CustomMediaPlayer.Status.PAUSED){
             //直接复用start
             start();
         }
     }
 
+    /**
+     * 对外提供跳转
+     * @param position 毫秒
+     */
+    @Override
+    public void seekTo(int position){
+        if (getStatus() == CustomMediaPlayer.Status.STATED
+                || getStatus() == CustomMediaPlayer.Status.PAUSED){
+            mMediaPlayer.seekTo(position);
+            //进度基准变化，通知外部控制器
+            EventBus.getDefault().post(new AudioSeekEvent());
+        }
+    }
+
     /**
      * 清空播放器占用资源
      */
+    @Override
     public void release(){
         if (mMediaPlayer == null){
             return;
         }
+        mHandler.removeMessages(TIME_MSG);
         mMediaPlayer.release();
         mMediaPlayer = null;
         if (mAudioFocusManager != null){
@@ -163,6 +209,7 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
 
 
     //获取播放器当前的状态
+    @Override
     public CustomMediaPlayer.Status getStatus() {
         if (mMediaPlayer != null) {
             return mMediaPlayer.getState();
@@ -171,6 +218,7 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
     }
 
     //获取当前音乐总时长，更新进度用
+    @Override
     public int getDuration() {
         if (getStatus() == CustomMediaPlayer.Status.STATED
                 || getStatus() == CustomMediaPlayer.Status.PAUSED) {
@@ -179,6 +227,7 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
         return 0;
     }
 
+    @Override
     public int getCurrentPosition() {
         if (getStatus() == CustomMediaPlayer.Status.STATED
                 || getStatus() == CustomMediaPlayer.Status.PAUSED) {
@@ -208,6 +257,10 @@ public class AudioPlayer implements MediaPlayer.OnCompletionListener,
     @Override
     public void onPrepared(MediaPlayer mp) {
         //准备完毕
+        if (mStartPosition > 0){
+            mMediaPlayer.seekTo(mStartPosition);
+            mStartPosition = 0;
+        }
         start();
     }
 
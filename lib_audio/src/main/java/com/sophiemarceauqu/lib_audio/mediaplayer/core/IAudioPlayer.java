@@ -0,0 +1,32 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.core;
+
+import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
+
+/**
+ * AudioController所依赖的播放器能力
+ * 真机上由AudioPlayer实现，单元测试和benchmark中可替换为纯JVM实现
+ */
+public interface IAudioPlayer {
+    void load(AudioBean audioBean);
+
+    /**
+     * 加载并从指定位置开始播放
+     *
+     * @param startPosition 毫秒
+     */
+    void load(AudioBean audioBean, int startPosition);
+
+    void pause();
+
+    void resume();
+
+    void seekTo(int position);
+
+    void release();
+
+    CustomMediaPlayer.Status getStatus();
+
+    int getDuration();
+
+    int getCurrentPosition();
+}
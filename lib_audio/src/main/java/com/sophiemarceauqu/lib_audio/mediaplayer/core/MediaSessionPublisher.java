@@ -0,0 +1,205 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.core;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.support.v4.media.MediaMetadataCompat;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+
+import androidx.media.session.MediaButtonReceiver;
+
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioCompleteEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioLoadEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioPauseEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioReleaseEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioSeekEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioStartEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
+import com.sophiemarceauqu.lib_image_loader.app.ImageLoaderManager;
+
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
+
+/**
+ * 向系统MediaSession发布播放状态，供锁屏，耳机，蓝牙等外部控制器使用
+ * 1只在状态或歌曲真正变化时发布，不跟随100ms的进度事件，外部控制器根据
+ * position + 更新时间 + 播放速度自行推算进度
+ * 2专辑封面只按固定尺寸解码一次，同一首歌重复发布时复用
+ */
+public class MediaSessionPublisher {
+    private static final String TAG = "MediaSessionPublisher";
+    //封面边长，系统控制器不需要原图
+    private static final int ART_SIZE = 320;
+    private static final long ACTIONS = PlaybackStateCompat.ACTION_PLAY
+            | PlaybackStateCompat.ACTION_PAUSE
+            | PlaybackStateCompat.ACTION_PLAY_PAUSE
+            | PlaybackStateCompat.ACTION_SKIP_TO_NEXT
+            | PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS
+            | PlaybackStateCompat.ACTION_SEEK_TO
+            | PlaybackStateCompat.ACTION_STOP;
+
+    private Context mContext;
+    private MediaSessionCompat mSession;
+    private PlaybackStateCompat.Builder mStateBuilder = new PlaybackStateCompat.Builder().setActions(ACTIONS);
+
+    //上次发布的内容，用来过滤重复发布
+    private int mLastState = PlaybackStateCompat.STATE_NONE;
+    private AudioBean mAudioBean;
+    private long mPublishedDuration;
+    private String mArtUrl;
+    private Bitmap mArt;
+
+    public MediaSessionPublisher(Context context) {
+        mContext = context.getApplicationContext();
+        mSession = new MediaSessionCompat(mContext, TAG);
+        mSession.setFlags(MediaSessionCompat.FLAG_HANDLES_MEDIA_BUTTONS
+                | MediaSessionCompat.FLAG_HANDLES_TRANSPORT_CONTROLS);
+        mSession.setCallback(new SessionCallback());
+        mSession.setActive(true);
+        EventBus.getDefault().register(this);
+    }
+
+    public MediaSessionCompat.Token getSessionToken() {
+        return mSession.getSessionToken();
+    }
+
+    /**
+     * 处理低版本系统经MediaButtonReceiver转发过来的媒体按键
+     */
+    public void handleMediaButtonIntent(Intent intent) {
+        MediaButtonReceiver.handleIntent(mSession, intent);
+    }
+
+    public void release() {
+        EventBus.getDefault().unregister(this);
+        mSession.setActive(false);
+        mSession.release();
+    }
+
+    private void publishState(int state, boolean force) {
+        if (state == mLastState && !force) {
+            return;
+        }
+        mLastState = state;
+        float speed = state == PlaybackStateCompat.STATE_PLAYING ? 1.0f : 0f;
+        mStateBuilder.setState(state, AudioController.getInstance().getNowPlayTime(), speed,
+                SystemClock.elapsedRealtime());
+        mSession.setPlaybackState(mStateBuilder.build());
+    }
+
+    private void publishMetadata() {
+        if (mAudioBean == null) {
+            return;
+        }
+        MediaMetadataCompat.Builder builder = new MediaMetadataCompat.Builder()
+                .putString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID, mAudioBean.id)
+                .putString(MediaMetadataCompat.METADATA_KEY_TITLE, mAudioBean.name)
+                .putString(MediaMetadataCompat.METADATA_KEY_ARTIST, mAudioBean.author)
+                .putString(MediaMetadataCompat.METADATA_KEY_ALBUM, mAudioBean.album)
+                .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, mPublishedDuration);
+        if (mArt != null && mAudioBean.albumPic != null && mAudioBean.albumPic.equals(mArtUrl)) {
+            builder.putBitmap(MediaMetadataCompat.METADATA_KEY_ALBUM_ART, mArt);
+        }
+        mSession.setMetadata(builder.build());
+    }
+
+    private void loadArt(final AudioBean bean) {
+        if (bean.albumPic == null || bean.albumPic.equals(mArtUrl)) {
+            //同一张封面已经解码过
+            return;
+        }
+        ImageLoaderManager.getInstance().loadBitmap(mContext, bean.albumPic, ART_SIZE,
+                new ImageLoaderManager.BitmapLoadListener() {
+                    @Override
+                    public void onBitmapLoaded(Bitmap bitmap) {
+                        mArtUrl = bean.albumPic;
+                        mArt = bitmap;
+                        //加载期间已切歌则不再发布
+                        if (mAudioBean != null && mAudioBean.equals(bean)) {
+                            publishMetadata();
+                        }
+                    }
+                });
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAudioLoadEvent(AudioLoadEvent event) {
+        mAudioBean = event.mAudioBean;
+        mPublishedDuration = 0;
+        publishMetadata();
+        loadArt(mAudioBean);
+        publishState(PlaybackStateCompat.STATE_BUFFERING, true);
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAudioStartEvent(AudioStartEvent event) {
+        //时长在准备完成后才知道，每首歌只补发一次
+        long duration = AudioController.getInstance().getTotalPlayTime();
+        if (duration > 0 && duration != mPublishedDuration) {
+            mPublishedDuration = duration;
+            publishMetadata();
+        }
+        publishState(PlaybackStateCompat.STATE_PLAYING, false);
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAudioPauseEvent(AudioPauseEvent event) {
+        publishState(PlaybackStateCompat.STATE_PAUSED, false);
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAudioSeekEvent(AudioSeekEvent event) {
+        //应用内或外部控制器跳转后进度基准变化，需要重新发布
+        publishState(mLastState, true);
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAudioCompleteEvent(AudioCompleteEvent event) {
+        //播放停在结尾，停止外部控制器的进度推算，切歌后由AudioLoadEvent继续发布
+        publishState(PlaybackStateCompat.STATE_SKIPPING_TO_NEXT, true);
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAudioReleaseEvent(AudioReleaseEvent event) {
+        publishState(PlaybackStateCompat.STATE_STOPPED, false);
+    }
+
+    /**
+     * 外部控制器的指令统一交给AudioController
+     */
+    private class SessionCallback extends MediaSessionCompat.Callback {
+        @Override
+        public void onPlay() {
+            AudioController.getInstance().resume();
+        }
+
+        @Override
+        public void onPause() {
+            AudioController.getInstance().pause();
+        }
+
+        @Override
+        public void onStop() {
+            AudioController.getInstance().pause();
+        }
+
+        @Override
+        public void onSkipToNext() {
+            AudioController.getInstance().next();
+        }
+
+        @Override
+        public void onSkipToPrevious() {
+            AudioController.getInstance().previous();
+        }
+
+        @Override
+        public void onSeekTo(long pos) {
+            //跳转成功后由AudioSeekEvent重新发布
+            AudioController.getInstance().seekTo((int) pos);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.sophiemarceauqu.lib_audio.mediaplayer.core;
 
+import android.app.Notification;
 import android.app.Service;
 import android.content.BroadcastReceiver;
 import android.content.Context;
@@ -37,6 +38,8 @@ public class MusicService extends Service implements NotificationHelper.Notifica
     //data
     private ArrayList<AudioBean> mAudioBeans;
     private NotificationReceiver mReceiver;
+    //系统媒体会话，锁屏/耳机/蓝牙控制
+    private MediaSessionPublisher mMediaSessionPublisher;
 
     //外部直接service方法
     public static void startMusicService(ArrayList<AudioBean> audioBeans) {
@@ -58,10 +61,19 @@ public class MusicService extends Service implements NotificationHelper.Notifica
         super.onCreate();
         EventBus.getDefault().register(this);
         registerBroadcastReceiver();
+        mMediaSessionPublisher = new MediaSessionPublisher(this);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && Intent.ACTION_MEDIA_BUTTON.equals(intent.getAction())) {
+            //低版本系统的媒体按键由MediaButtonReceiver转发过来
+            //8.0以上MediaButtonReceiver用startForegroundService拉起服务，必须进入前台，否则应用被系统杀掉
+            if (startForegroundForMediaButton()) {
+                mMediaSessionPublisher.handleMediaButtonIntent(intent);
+            }
+            return super.onStartCommand(intent, flags, startId);
+        }
         mAudioBeans = (ArrayList<AudioBean>) intent.getSerializableExtra(DATA_AUDIOS);
         if (ACTION_START.equals(intent.getAction())) {
             //开始播放音乐
@@ -72,6 +84,29 @@ public class MusicService extends Service implements NotificationHelper.Notifica
         return super.onStartCommand(intent, flags, startId);
     }
 
+    /**
+     * 媒体按键拉起服务时进入前台
+     *
+     * @return false表示没有可播放的队列，服务已退出，按键不再处理
+     */
+    private boolean startForegroundForMediaButton() {
+        Notification notification = NotificationHelper.getInstance().getNotification();
+        if (notification != null) {
+            startForeground(NOTIFICATION_ID, notification);
+            return true;
+        }
+        if (!AudioController.getInstance().getQueue().isEmpty()) {
+            //有播放队列，正常初始化前台Notification
+            NotificationHelper.getInstance().init(this);
+            return true;
+        }
+        //冷启动且队列为空，先用占位Notification满足前台要求再退出
+        startForeground(NOTIFICATION_ID, NotificationHelper.getInstance().createIdleNotification());
+        stopForeground(true);
+        stopSelf();
+        return false;
+    }
+
     @Override
     public void onNotificationInit() {
         //service与Notification的绑定 并使服务成为前台服务。
@@ -83,6 +118,7 @@ public class MusicService extends Service implements NotificationHelper.Notifica
         super.onDestroy();
         EventBus.getDefault().unregister(this);
         unRegisterBroadcastReceiver();
+        mMediaSessionPublisher.release();
     }
 
     private void registerBroadcastReceiver() {
@@ -0,0 +1,299 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.effect;
+
+import android.media.audiofx.BassBoost;
+import android.media.audiofx.Equalizer;
+import android.media.audiofx.Virtualizer;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 音效管理类：均衡器，重低音，环绕
+ * 1音效绑定在播放器的audio session上，而不是绑定在播放器对象上，
+ * 切歌(reset)和播放器重建时只要session不变就复用已创建的音效对象
+ * 2对外提供音效设置方法，设置会持久化，下次绑定时自动恢复
+ */
+public class AudioEffectManager {
+    private static final String TAG = "AudioEffectManager";
+    private static final int EFFECT_PRIORITY = 0;
+
+    private Equalizer mEqualizer;
+    private BassBoost mBassBoost;
+    private Virtualizer mVirtualizer;
+    //当前绑定的session，0表示未绑定
+    private int mAudioSessionId;
+
+    private AudioEffectStorage mStorage = new AudioEffectStorage();
+    private AudioEffectPreset mCurrent;
+    private boolean mEnabled;
+    private boolean mLoaded;
+
+    private static class SingletonHolder {
+        private static AudioEffectManager instance = new AudioEffectManager();
+    }
+
+    public static AudioEffectManager getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private AudioEffectManager() {
+    }
+
+    //首次使用时才读取本地配置
+    private void ensureLoaded() {
+        if (!mLoaded) {
+            mEnabled = mStorage.isEnabled();
+            mCurrent = mStorage.loadCurrent();
+            if (mCurrent == null) {
+                mCurrent = new AudioEffectPreset();
+            }
+            mLoaded = true;
+        }
+    }
+
+    /**
+     * 绑定到播放器的audio session，同一个session重复绑定直接复用
+     *
+     * @param audioSessionId
+     */
+    public void attach(int audioSessionId) {
+        if (audioSessionId == 0) {
+            return;
+        }
+        if (audioSessionId == mAudioSessionId && mEqualizer != null) {
+            return;
+        }
+        ensureLoaded();
+        releaseEffects();
+        try {
+            mEqualizer = new Equalizer(EFFECT_PRIORITY, audioSessionId);
+            mBassBoost = new BassBoost(EFFECT_PRIORITY, audioSessionId);
+            mVirtualizer = new Virtualizer(EFFECT_PRIORITY, audioSessionId);
+            mAudioSessionId = audioSessionId;
+            applyCurrent();
+        } catch (RuntimeException e) {
+            //部分机型不支持某些音效
+            Log.e(TAG, "创建音效失败", e);
+            releaseEffects();
+        }
+    }
+
+    /**
+     * 播放器重建时复用此session，音效对象就不需要重建
+     *
+     * @return 0表示还未绑定过
+     */
+    public int getAudioSessionId() {
+        return mAudioSessionId;
+    }
+
+    public boolean isEnabled() {
+        ensureLoaded();
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        ensureLoaded();
+        mEnabled = enabled;
+        mStorage.setEnabled(enabled);
+        try {
+            if (mEqualizer != null) mEqualizer.setEnabled(enabled);
+            if (mBassBoost != null) mBassBoost.setEnabled(enabled);
+            if (mVirtualizer != null) mVirtualizer.setEnabled(enabled);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "设置音效开关失败", e);
+        }
+    }
+
+    /**
+     * 均衡器频段数，未绑定时为0
+     */
+    public short getNumberOfBands() {
+        return mEqualizer == null ? 0 : mEqualizer.getNumberOfBands();
+    }
+
+    /**
+     * 频段增益范围 [min, max]，单位millibel
+     */
+    public short[] getBandLevelRange() {
+        return mEqualizer == null ? new short[]{0, 0} : mEqualizer.getBandLevelRange();
+    }
+
+    public int getCenterFreq(short band) {
+        return mEqualizer == null ? 0 : mEqualizer.getCenterFreq(band);
+    }
+
+    /**
+     * 系统内置均衡器预设名称
+     */
+    public List<String> getSystemPresetNames() {
+        List<String> names = new ArrayList<>();
+        if (mEqualizer != null) {
+            for (short i = 0; i < mEqualizer.getNumberOfPresets(); i++) {
+                names.add(mEqualizer.getPresetName(i));
+            }
+        }
+        return names;
+    }
+
+    public void useSystemPreset(short preset) {
+        ensureLoaded();
+        mCurrent.systemPreset = preset;
+        mCurrent.bandLevels = null;
+        applyCurrent();
+        mStorage.saveCurrent(mCurrent);
+    }
+
+    public void setBandLevel(short band, short level) {
+        ensureLoaded();
+        if (mEqualizer == null) {
+            return;
+        }
+        short bands = mEqualizer.getNumberOfBands();
+        if (band < 0 || band >= bands) {
+            Log.w(TAG, "均衡器频段越界: " + band + "/" + bands);
+            return;
+        }
+        if (mCurrent.bandLevels == null || mCurrent.bandLevels.length != bands) {
+            //从系统预设切换到自定义时，以当前实际增益为起点
+            mCurrent.bandLevels = new short[bands];
+            for (short i = 0; i < bands; i++) {
+                mCurrent.bandLevels[i] = mEqualizer.getBandLevel(i);
+            }
+        }
+        mCurrent.systemPreset = AudioEffectPreset.CUSTOM_PRESET;
+        mCurrent.bandLevels[band] = level;
+        try {
+            mEqualizer.setBandLevel(band, level);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "设置均衡器频段失败", e);
+        }
+        mStorage.saveCurrent(mCurrent);
+    }
+
+    public short getBandLevel(short band) {
+        return mEqualizer == null ? 0 : mEqualizer.getBandLevel(band);
+    }
+
+    public void setBassBoostStrength(short strength) {
+        ensureLoaded();
+        mCurrent.bassBoostStrength = strength;
+        try {
+            if (mBassBoost != null && mBassBoost.getStrengthSupported()) {
+                mBassBoost.setStrength(strength);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "设置重低音失败", e);
+        }
+        mStorage.saveCurrent(mCurrent);
+    }
+
+    public short getBassBoostStrength() {
+        ensureLoaded();
+        return mCurrent.bassBoostStrength;
+    }
+
+    public void setVirtualizerStrength(short strength) {
+        ensureLoaded();
+        mCurrent.virtualizerStrength = strength;
+        try {
+            if (mVirtualizer != null && mVirtualizer.getStrengthSupported()) {
+                mVirtualizer.setStrength(strength);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "设置环绕失败", e);
+        }
+        mStorage.saveCurrent(mCurrent);
+    }
+
+    public short getVirtualizerStrength() {
+        ensureLoaded();
+        return mCurrent.virtualizerStrength;
+    }
+
+    /**
+     * 将当前音效保存为用户预设
+     */
+    public void saveUserPreset(String name) {
+        ensureLoaded();
+        mStorage.saveUserPreset(name, mCurrent);
+    }
+
+    /**
+     * 应用用户预设
+     *
+     * @return 预设不存在返回false
+     */
+    public boolean useUserPreset(String name) {
+        ensureLoaded();
+        AudioEffectPreset preset = mStorage.loadUserPreset(name);
+        if (preset == null) {
+            return false;
+        }
+        mCurrent = preset.copy();
+        applyCurrent();
+        mStorage.saveCurrent(mCurrent);
+        return true;
+    }
+
+    public void removeUserPreset(String name) {
+        mStorage.removeUserPreset(name);
+    }
+
+    public List<String> getUserPresetNames() {
+        return mStorage.loadUserPresetNames();
+    }
+
+    /**
+     * 彻底释放音效，只在播放器整体销毁时调用
+     */
+    public void release() {
+        releaseEffects();
+    }
+
+    //将当前参数应用到已绑定的音效对象
+    private void applyCurrent() {
+        if (mEqualizer == null) {
+            return;
+        }
+        try {
+            if (mCurrent.systemPreset != AudioEffectPreset.CUSTOM_PRESET
+                    && mCurrent.systemPreset < mEqualizer.getNumberOfPresets()) {
+                mEqualizer.usePreset(mCurrent.systemPreset);
+            } else if (mCurrent.bandLevels != null
+                    && mCurrent.bandLevels.length == mEqualizer.getNumberOfBands()) {
+                for (short i = 0; i < mCurrent.bandLevels.length; i++) {
+                    mEqualizer.setBandLevel(i, mCurrent.bandLevels[i]);
+                }
+            }
+            if (mBassBoost.getStrengthSupported()) {
+                mBassBoost.setStrength(mCurrent.bassBoostStrength);
+            }
+            if (mVirtualizer.getStrengthSupported()) {
+                mVirtualizer.setStrength(mCurrent.virtualizerStrength);
+            }
+            mEqualizer.setEnabled(mEnabled);
+            mBassBoost.setEnabled(mEnabled);
+            mVirtualizer.setEnabled(mEnabled);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "应用音效失败", e);
+        }
+    }
+
+    private void releaseEffects() {
+        if (mEqualizer != null) {
+            mEqualizer.release();
+            mEqualizer = null;
+        }
+        if (mBassBoost != null) {
+            mBassBoost.release();
+            mBassBoost = null;
+        }
+        if (mVirtualizer != null) {
+            mVirtualizer.release();
+            mVirtualizer = null;
+        }
+        mAudioSessionId = 0;
+    }
+}
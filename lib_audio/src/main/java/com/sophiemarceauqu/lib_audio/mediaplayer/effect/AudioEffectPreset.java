@@ -0,0 +1,69 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.effect;
+
+import android.text.TextUtils;
+
+/**
+ * 音效参数：均衡器各频段增益 + 重低音强度 + 环绕强度
+ * 以紧凑字符串形式持久化，格式 "preset|band0,band1,...|bass|virtualizer"
+ */
+public class AudioEffectPreset {
+    //不使用系统预设，使用自定义频段
+    public static final short CUSTOM_PRESET = -1;
+
+    public short systemPreset = CUSTOM_PRESET;
+    public short[] bandLevels;//单位 millibel
+    public short bassBoostStrength;//0~1000
+    public short virtualizerStrength;//0~1000
+
+    public AudioEffectPreset copy() {
+        AudioEffectPreset preset = new AudioEffectPreset();
+        preset.systemPreset = systemPreset;
+        preset.bandLevels = bandLevels == null ? null : bandLevels.clone();
+        preset.bassBoostStrength = bassBoostStrength;
+        preset.virtualizerStrength = virtualizerStrength;
+        return preset;
+    }
+
+    public String encode() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(systemPreset).append('|');
+        if (bandLevels != null) {
+            for (int i = 0; i < bandLevels.length; i++) {
+                if (i > 0) builder.append(',');
+                builder.append(bandLevels[i]);
+            }
+        }
+        builder.append('|').append(bassBoostStrength)
+                .append('|').append(virtualizerStrength);
+        return builder.toString();
+    }
+
+    /**
+     * @return 解析失败返回null
+     */
+    public static AudioEffectPreset decode(String value) {
+        if (TextUtils.isEmpty(value)) {
+            return null;
+        }
+        String[] parts = value.split("\\|", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            AudioEffectPreset preset = new AudioEffectPreset();
+            preset.systemPreset = Short.parseShort(parts[0]);
+            if (!TextUtils.isEmpty(parts[1])) {
+                String[] levels = parts[1].split(",");
+                preset.bandLevels = new short[levels.length];
+                for (int i = 0; i < levels.length; i++) {
+                    preset.bandLevels[i] = Short.parseShort(levels[i]);
+                }
+            }
+            preset.bassBoostStrength = Short.parseShort(parts[2]);
+            preset.virtualizerStrength = Short.parseShort(parts[3]);
+            return preset;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.effect;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+
+import com.sophiemarceauqu.lib_audio.app.AudioHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 音效持久化，当前音效与用户自定义音效都存在SharedPreferences中
+ */
+class AudioEffectStorage {
+    private static final String PREFS_NAME = "audio_effect_prefs";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_CURRENT = "current";
+    private static final String KEY_USER_NAMES = "user_preset_names";
+    private static final String KEY_USER_PREFIX = "user_preset_";
+    private static final String NAME_SEPARATOR = "\n";
+
+    private SharedPreferences mPrefs;
+
+    private SharedPreferences getPrefs() {
+        if (mPrefs == null) {
+            mPrefs = AudioHelper.getContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        }
+        return mPrefs;
+    }
+
+    boolean isEnabled() {
+        return getPrefs().getBoolean(KEY_ENABLED, false);
+    }
+
+    void setEnabled(boolean enabled) {
+        getPrefs().edit().putBoolean(KEY_ENABLED, enabled).apply();
+    }
+
+    AudioEffectPreset loadCurrent() {
+        return AudioEffectPreset.decode(getPrefs().getString(KEY_CURRENT, null));
+    }
+
+    void saveCurrent(AudioEffectPreset preset) {
+        getPrefs().edit().putString(KEY_CURRENT, preset.encode()).apply();
+    }
+
+    List<String> loadUserPresetNames() {
+        String names = getPrefs().getString(KEY_USER_NAMES, null);
+        if (TextUtils.isEmpty(names)) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(names.split(NAME_SEPARATOR)));
+    }
+
+    AudioEffectPreset loadUserPreset(String name) {
+        return AudioEffectPreset.decode(getPrefs().getString(KEY_USER_PREFIX + name, null));
+    }
+
+    void saveUserPreset(String name, AudioEffectPreset preset) {
+        List<String> names = loadUserPresetNames();
+        if (!names.contains(name)) {
+            names.add(name);
+        }
+        getPrefs().edit()
+                .putString(KEY_USER_PREFIX + name, preset.encode())
+                .putString(KEY_USER_NAMES, TextUtils.join(NAME_SEPARATOR, names))
+                .apply();
+    }
+
+    void removeUserPreset(String name) {
+        List<String> names = loadUserPresetNames();
+        names.remove(name);
+        getPrefs().edit()
+                .remove(KEY_USER_PREFIX + name)
+                .putString(KEY_USER_NAMES, TextUtils.join(NAME_SEPARATOR, names))
+                .apply();
+    }
+}
@@ -0,0 +1,4 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.events;
+
+public class AudioSeekEvent {
+}
@@ -1,5 +1,7 @@
 package com.sophiemarceauqu.lib_audio.mediaplayer.model;
 
+import com.sophiemarceauqu.lib_network.annotation.JsonModel;
+
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Id;
 import org.greenrobot.greendao.annotation.NotNull;
@@ -8,6 +10,7 @@ import org.greenrobot.greendao.annotation.Unique;
 import java.io.Serializable;
 import org.greenrobot.greendao.annotation.Generated;
 
+@JsonModel
 @Entity
 public class AudioBean implements Serializable {
     private static final long serialVersionUID = -8849228294348905620L;
@@ -0,0 +1,29 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.model;
+
+import java.util.ArrayList;
+
+/**
+ * 播放会话：一个独立的播放队列及其播放进度
+ * 切换会话只是切换引用，不会重建队列
+ */
+public class PlaySession {
+    //主播放队列
+    public static final String MAIN = "main";
+    //临时试听，如动态里的分享音频，播完自动回到主队列
+    public static final String PREVIEW = "preview";
+    //电台
+    public static final String RADIO = "radio";
+
+    public final String name;
+    //临时会话播完即回到主队列并被移除
+    public final boolean ephemeral;
+    public final ArrayList<AudioBean> queue = new ArrayList<>();
+    public int queueIndex;
+    //离开会话时的播放位置，毫秒
+    public int position;
+
+    public PlaySession(String name, boolean ephemeral) {
+        this.name = name;
+        this.ephemeral = ephemeral;
+    }
+}
@@ -76,12 +76,7 @@ public class NotificationHelper {
             PendingIntent pendingIntent = PendingIntent.getActivity(AudioHelper.getContext(), 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
 
             //适配Android8.0的消息渠道
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O){
-                NotificationChannel channel = new NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_HIGH);
-                channel.enableLights(false);
-                channel.enableVibration(false);
-                mNotifacationManager.createNotificationChannel(channel);
-            }
+            createChannel(mNotifacationManager);
 
             NotificationCompat.Builder builder = new NotificationCompat
                     .Builder(AudioHelper.getContext(),CHANNEL_ID).setContentIntent(pendingIntent)
@@ -93,6 +88,26 @@ public class NotificationHelper {
         }
     }
 
+    /**
+     * 没有播放内容时的占位Notification，只用于满足前台服务的启动要求
+     */
+    public Notification createIdleNotification() {
+        createChannel((NotificationManager) AudioHelper.getContext().getSystemService(Context.NOTIFICATION_SERVICE));
+        return new NotificationCompat.Builder(AudioHelper.getContext(), CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .build();
+    }
+
+    //适配Android8.0的消息渠道
+    private static void createChannel(NotificationManager manager) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O){
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_HIGH);
+            channel.enableLights(false);
+            channel.enableVibration(false);
+            manager.createNotificationChannel(channel);
+        }
+    }
+
     //创建Notification的布局，默认布局为Loading状态
     private void initRemoteViews() {
         int layoutId = R.layout.notification_big_layout;
@@ -0,0 +1,109 @@
+package com.sophiemarceauqu.lib_audio.benchmark;
+
+import com.sophiemarceauqu.lib_audio.mediaplayer.core.AudioController;
+import com.sophiemarceauqu.lib_audio.mediaplayer.core.FakeAudioPlayer;
+import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AudioController在大队列上的切歌与加歌吞吐
+ * 运行: ./gradlew :lib_audio:jmh -Pjmh.include=AudioControllerBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioControllerBenchmark {
+    //每次迭代预先准备的新歌数量，也是addAudioNew每次迭代的调用次数，避免把构造AudioBean的开销算进addAudio
+    private static final int NEW_AUDIO_POOL = 20000;
+
+    @Param({"1000", "100000"})
+    public int queueSize;
+
+    @Param({"LOOP", "RANDOM"})
+    public String playMode;
+
+    private AudioController mController;
+    private ArrayList<AudioBean> mQueue;
+    private AudioBean[] mNewAudios;
+    private int mNewAudioIndex;
+    private AudioBean mExisting;
+
+    @Setup(Level.Trial)
+    public void setUpQueue() {
+        mQueue = new ArrayList<>(queueSize);
+        for (int i = 0; i < queueSize; i++) {
+            mQueue.add(FakeAudioPlayer.newAudio(String.valueOf(i)));
+        }
+        //查找最坏情况：队尾的歌
+        mExisting = mQueue.get(queueSize - 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpController() {
+        mController = FakeAudioPlayer.newController(new FakeAudioPlayer());
+        mController.setQueue(mQueue);
+        mController.setPlayMode(AudioController.PlayMode.valueOf(playMode));
+        mNewAudios = new AudioBean[NEW_AUDIO_POOL];
+        for (int i = 0; i < NEW_AUDIO_POOL; i++) {
+            mNewAudios[i] = FakeAudioPlayer.newAudio("new" + i);
+        }
+        mNewAudioIndex = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownController() {
+        mController.release();
+    }
+
+    @Benchmark
+    public void next(Blackhole blackhole) {
+        mController.next();
+        blackhole.consume(mController.getQueueIndex());
+    }
+
+    @Benchmark
+    public void previous(Blackhole blackhole) {
+        mController.previous();
+        blackhole.consume(mController.getQueueIndex());
+    }
+
+    @Benchmark
+    public void addAudioExisting(Blackhole blackhole) {
+        mController.addAudio(mExisting);
+        blackhole.consume(mController.getQueueIndex());
+    }
+
+    /**
+     * 每次迭代是一批NEW_AUDIO_POOL次调用，迭代前重建队列和新歌，保证每次都是真正的新歌，
+     * 不会在新歌用完后退化成已存在分支；结果为整批耗时
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = NEW_AUDIO_POOL)
+    @Measurement(iterations = 5, batchSize = NEW_AUDIO_POOL)
+    public void addAudioNew(Blackhole blackhole) {
+        mController.addAudio(mNewAudios[mNewAudioIndex++]);
+        blackhole.consume(mController.getQueue().size());
+    }
+}
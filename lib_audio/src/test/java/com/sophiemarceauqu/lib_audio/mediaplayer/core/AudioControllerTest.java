@@ -0,0 +1,196 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.core;
+
+import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
+import com.sophiemarceauqu.lib_audio.mediaplayer.model.PlaySession;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.sophiemarceauqu.lib_audio.mediaplayer.core.FakeAudioPlayer.newAudio;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AudioController队列与播放模式逻辑，纯JVM运行
+ */
+public class AudioControllerTest {
+    private FakeAudioPlayer mPlayer;
+    private AudioController mController;
+
+    @Before
+    public void setUp() {
+        mPlayer = new FakeAudioPlayer();
+        mController = FakeAudioPlayer.newController(mPlayer);
+        mController.setQueue(queueOf("1", "2", "3"));
+    }
+
+    @After
+    public void tearDown() {
+        mController.release();
+    }
+
+    private static ArrayList<AudioBean> queueOf(String... ids) {
+        ArrayList<AudioBean> queue = new ArrayList<>();
+        for (String id : ids) {
+            queue.add(newAudio(id));
+        }
+        return queue;
+    }
+
+    @Test
+    public void next_loopModeWrapsAround() {
+        mController.setPlayIndex(2);
+        mController.next();
+        assertEquals(0, mController.getQueueIndex());
+        assertEquals("1", mPlayer.getLoaded().id);
+    }
+
+    @Test
+    public void previous_loopModeWrapsAround() {
+        mController.setPlayIndex(0);
+        mController.previous();
+        assertEquals(2, mController.getQueueIndex());
+        assertEquals("3", mPlayer.getLoaded().id);
+    }
+
+    @Test
+    public void next_repeatModeKeepsIndex() {
+        mController.setPlayMode(AudioController.PlayMode.REPEAT);
+        mController.setPlayIndex(1);
+        mController.next();
+        assertEquals(1, mController.getQueueIndex());
+    }
+
+    @Test
+    public void next_randomModeStaysInQueue() {
+        mController.setPlayMode(AudioController.PlayMode.RANDOM);
+        for (int i = 0; i < 100; i++) {
+            mController.next();
+            int index = mController.getQueueIndex();
+            assertTrue(index >= 0 && index < 3);
+        }
+    }
+
+    @Test
+    public void addAudio_newBeanInsertedAndPlayed() {
+        mController.addAudio(newAudio("4"));
+        assertEquals(4, mController.getQueue().size());
+        assertEquals("4", mController.getNowPlaying().id);
+        assertEquals("4", mPlayer.getLoaded().id);
+    }
+
+    @Test
+    public void addAudio_existingBeanSwitchesWithoutInsert() {
+        mController.setPlayIndex(0);
+        mController.addAudio(newAudio("3"));
+        assertEquals(3, mController.getQueue().size());
+        assertEquals(2, mController.getQueueIndex());
+    }
+
+    @Test
+    public void addAudios_skipsDuplicates() {
+        int first = mController.addAudios(Arrays.asList(newAudio("2"), newAudio("4"), newAudio("4")));
+        assertEquals(3, first);
+        assertEquals(4, mController.getQueue().size());
+        assertEquals(-1, mController.addAudios(Arrays.asList(newAudio("1"))));
+    }
+
+    @Test
+    public void removeAudios_keepsCurrentTrack() {
+        mController.setPlayIndex(2);
+        int loads = mPlayer.getLoadCount();
+        mController.removeAudios(Arrays.asList("1"));
+        assertEquals(1, mController.getQueueIndex());
+        assertEquals("3", mController.getNowPlaying().id);
+        assertEquals(loads, mPlayer.getLoadCount());
+    }
+
+    @Test
+    public void removeAudios_currentRemovedPlaysNext() {
+        mController.setPlayIndex(1);
+        mController.removeAudios(Arrays.asList("2"));
+        assertEquals("3", mController.getNowPlaying().id);
+        assertEquals("3", mPlayer.getLoaded().id);
+    }
+
+    @Test
+    public void preview_doesNotTouchMainQueueAndReturnsOnComplete() {
+        mController.setPlayIndex(1);
+        mPlayer.seekTo(30000);
+        mController.preview(newAudio("friend"));
+        assertEquals(PlaySession.PREVIEW, mController.getSessionName());
+        assertEquals("friend", mPlayer.getLoaded().id);
+
+        mPlayer.complete();
+        assertEquals(PlaySession.MAIN, mController.getSessionName());
+        assertEquals(3, mController.getQueue().size());
+        assertEquals(1, mController.getQueueIndex());
+        assertEquals("2", mPlayer.getLoaded().id);
+        //恢复到离开时的播放位置
+        assertEquals(30000, mPlayer.getCurrentPosition());
+    }
+
+    @Test
+    public void preview_errorReturnsToMainQueue() {
+        mController.setPlayIndex(1);
+        mController.preview(newAudio("broken"));
+        mPlayer.error();
+        assertEquals(PlaySession.MAIN, mController.getSessionName());
+        assertEquals("2", mPlayer.getLoaded().id);
+    }
+
+    @Test
+    public void switchToEmptySession_pausesAndIgnoresNext() {
+        mController.play();
+        mController.switchSession(PlaySession.RADIO);
+        assertTrue(mController.isPauseStatue());
+        assertNull(mController.getNowPlaying());
+        //上一个会话的歌播完也不会在空队列上切歌
+        mPlayer.complete();
+        mController.next();
+        mController.previous();
+        assertEquals("1", mPlayer.getLoaded().id);
+    }
+
+    @Test
+    public void playInSession_withOwnQueueKeepsSongs() {
+        mController.playInSession(PlaySession.MAIN, mController.getQueue(), 2);
+        assertEquals(3, mController.getQueue().size());
+        assertEquals("3", mPlayer.getLoaded().id);
+    }
+
+    @Test
+    public void playState_followsPlayer() {
+        mController.play();
+        assertTrue(mController.isStartState());
+        mController.pause();
+        assertTrue(mController.isPauseStatue());
+        mController.resume();
+        assertFalse(mController.isPauseStatue());
+    }
+
+    @Test
+    public void prepareLatency_playerStartsAfterDelay() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        FakeAudioPlayer player = new FakeAudioPlayer(50, scheduler);
+        AudioController controller = FakeAudioPlayer.newController(player);
+        try {
+            controller.setQueue(queueOf("1", "2"));
+            controller.play();
+            assertFalse(controller.isStartState());
+            Thread.sleep(200);
+            assertTrue(controller.isStartState());
+        } finally {
+            controller.release();
+            scheduler.shutdownNow();
+        }
+    }
+}
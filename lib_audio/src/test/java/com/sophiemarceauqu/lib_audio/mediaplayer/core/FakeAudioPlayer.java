@@ -0,0 +1,142 @@
+package com.sophiemarceauqu.lib_audio.mediaplayer.core;
+
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioCompleteEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.events.AudioErrorEvent;
+import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
+
+import org.greenrobot.eventbus.EventBus;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 纯JVM播放器，模拟CustomMediaPlayer的状态流转
+ * prepareLatencyMs为0时load后立即进入播放状态，否则在调度线程上延迟进入，模拟prepareAsync耗时
+ */
+public class FakeAudioPlayer implements IAudioPlayer {
+    private final long mPrepareLatencyMs;
+    private final ScheduledExecutorService mScheduler;
+
+    private volatile CustomMediaPlayer.Status mStatus = CustomMediaPlayer.Status.IDEL;
+    private volatile AudioBean mAudioBean;
+    private volatile int mPosition;
+    private volatile int mLoadCount;
+    //用于丢弃过期的prepare回调
+    private volatile int mGeneration;
+
+    public FakeAudioPlayer() {
+        this(0, null);
+    }
+
+    public FakeAudioPlayer(long prepareLatencyMs, ScheduledExecutorService scheduler) {
+        mPrepareLatencyMs = prepareLatencyMs;
+        mScheduler = scheduler;
+    }
+
+    @Override
+    public void load(AudioBean audioBean) {
+        load(audioBean, 0);
+    }
+
+    @Override
+    public void load(AudioBean audioBean, final int startPosition) {
+        mAudioBean = audioBean;
+        mLoadCount++;
+        mStatus = CustomMediaPlayer.Status.INITALIZED;
+        final int generation = ++mGeneration;
+        if (mPrepareLatencyMs <= 0 || mScheduler == null) {
+            onPrepared(startPosition);
+            return;
+        }
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration) {
+                    onPrepared(startPosition);
+                }
+            }
+        }, mPrepareLatencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void onPrepared(int startPosition) {
+        mPosition = startPosition;
+        mStatus = CustomMediaPlayer.Status.STATED;
+    }
+
+    @Override
+    public void pause() {
+        if (mStatus == CustomMediaPlayer.Status.STATED) {
+            mStatus = CustomMediaPlayer.Status.PAUSED;
+        }
+    }
+
+    @Override
+    public void resume() {
+        if (mStatus == CustomMediaPlayer.Status.PAUSED) {
+            mStatus = CustomMediaPlayer.Status.STATED;
+        }
+    }
+
+    @Override
+    public void seekTo(int position) {
+        mPosition = position;
+    }
+
+    @Override
+    public void release() {
+        mGeneration++;
+        mStatus = CustomMediaPlayer.Status.STOPPED;
+    }
+
+    @Override
+    public CustomMediaPlayer.Status getStatus() {
+        return mStatus;
+    }
+
+    @Override
+    public int getDuration() {
+        return 0;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mStatus == CustomMediaPlayer.Status.STATED || mStatus == CustomMediaPlayer.Status.PAUSED
+                ? mPosition : 0;
+    }
+
+    /**
+     * 模拟播放完毕，与真机一样通过EventBus通知AudioController
+     */
+    public void complete() {
+        mStatus = CustomMediaPlayer.Status.COMPLETED;
+        EventBus.getDefault().post(new AudioCompleteEvent());
+    }
+
+    /**
+     * 模拟加载出错
+     */
+    public void error() {
+        mStatus = CustomMediaPlayer.Status.STOPPED;
+        EventBus.getDefault().post(new AudioErrorEvent());
+    }
+
+    public AudioBean getLoaded() {
+        return mAudioBean;
+    }
+
+    public int getLoadCount() {
+        return mLoadCount;
+    }
+
+    /**
+     * 测试用，构造一个带注入播放器的AudioController
+     */
+    public static AudioController newController(IAudioPlayer player) {
+        return new AudioController(player);
+    }
+
+    public static AudioBean newAudio(String id) {
+        return new AudioBean(id, "http://test/" + id + ".mp3", "name" + id, "author", "album",
+                "albumInfo", "http://test/" + id + ".jpg", "04:00");
+    }
+}
@@ -1,12 +1,79 @@
 package com.sophiemarceau_qu.lib_base.service.audio;
 
 import com.alibaba.android.arouter.facade.template.IProvider;
+import com.sophiemarceau_qu.lib_base.service.audio.model.AudioInfo;
+import com.sophiemarceau_qu.lib_base.service.audio.model.AudioState;
+
+import java.util.List;
 
 /**
  * 音频对外接口
+ * 所有方法都是异步的：调用立即返回，操作投递到播放器所在的主线程执行，回调也在主线程
  */
 public interface AudioService extends IProvider {
     void pauseAudio();
 
     void resumeAudio();
+
+    /**
+     * 批量加入播放队列，整批只投递一次
+     *
+     * @param audios   已在队列中的歌曲会被忽略
+     * @param playNow  是否立即播放这批中的第一首
+     * @param callback 可为null
+     */
+    void enqueue(List<AudioInfo> audios, boolean playNow, ResultCallback callback);
+
+    /**
+     * 批量从播放队列移除
+     *
+     * @param audioIds
+     * @param callback 可为null
+     */
+    void remove(List<String> audioIds, ResultCallback callback);
+
+    /**
+     * 播放队列中指定id的歌曲
+     */
+    void play(String audioId, ResultCallback callback);
+
+    /**
+     * 查询播放器状态
+     */
+    void queryState(StateCallback callback);
+
+    /**
+     * 查询当前播放队列
+     */
+    void queryQueue(QueueCallback callback);
+
+    /**
+     * 监听播放进度，有监听者时才会订阅播放器进度
+     */
+    void addProgressListener(ProgressListener listener);
+
+    void removeProgressListener(ProgressListener listener);
+
+    interface ResultCallback {
+        void onSuccess();
+
+        void onFailure(String error);
+    }
+
+    interface StateCallback {
+        void onState(AudioState state);
+    }
+
+    interface QueueCallback {
+        void onQueue(List<AudioInfo> queue);
+    }
+
+    interface ProgressListener {
+        /**
+         * @param status   播放器状态名称
+         * @param progress 当前位置，毫秒
+         * @param duration 总时长，毫秒
+         */
+        void onProgress(String status, int progress, int duration);
+    }
 }
@@ -0,0 +1,25 @@
+package com.sophiemarceau_qu.lib_base.service.audio.model;
+
+import java.io.Serializable;
+
+/**
+ * 跨模块传递的音频信息，字段与lib_audio中的AudioBean一一对应
+ */
+public class AudioInfo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public String id;
+    //地址
+    public String url;
+    //歌名
+    public String name;
+    //作者
+    public String author;
+    //所属专辑
+    public String album;
+    public String albumInfo;
+    //专辑封面
+    public String albumPic;
+    //时长
+    public String totalTime;
+}
@@ -0,0 +1,19 @@
+package com.sophiemarceau_qu.lib_base.service.audio.model;
+
+/**
+ * 播放器状态快照
+ */
+public class AudioState {
+    //播放器状态，对应CustomMediaPlayer.Status的名称
+    public String status;
+    //当前歌曲，队列为空时为null
+    public AudioInfo current;
+    //当前播放位置，毫秒
+    public int position;
+    //总时长，毫秒
+    public int duration;
+    public int queueSize;
+    public int queueIndex;
+    //当前播放会话名称
+    public String session;
+}
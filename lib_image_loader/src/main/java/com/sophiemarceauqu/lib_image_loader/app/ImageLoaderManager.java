@@ -145,6 +145,33 @@ public class ImageLoaderManager {
         return  target;
     }
 
+    /**
+     * 加载指定尺寸的bitmap，解码时即完成缩放，结果会被Glide按尺寸缓存
+     * @param context
+     * @param url
+     * @param size 目标边长，像素
+     * @param listener
+     */
+    public void loadBitmap(Context context, String url, int size, final BitmapLoadListener listener) {
+        Glide.with(context)
+                .asBitmap()
+                .load(url)
+                .apply(initCommonRequestOption())
+                .override(size, size)
+                .centerCrop()
+                .into(new SimpleTarget<Bitmap>() {
+                    @Override
+                    public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
+                        listener.onBitmapLoaded(resource);
+                    }
+                });
+    }
+
+    //bitmap加载回调
+    public interface BitmapLoadListener {
+        void onBitmapLoaded(Bitmap bitmap);
+    }
+
     //为非View加载图片
     private void displayImageForTarget(Context context, Target target,String url){
         Glide.with(context)
@@ -0,0 +1,5 @@
+# @JsonModel实体按 类名_JsonBinder 查找编译期生成的绑定类，两者类名都不能混淆
+-keepnames @com.sophiemarceauqu.lib_network.annotation.JsonModel class *
+-keep class **_JsonBinder {
+    public static ** INSTANCE;
+}
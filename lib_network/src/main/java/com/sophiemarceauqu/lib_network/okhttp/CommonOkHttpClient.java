@@ -1,19 +1,37 @@
 package com.sophiemarceauqu.lib_network.okhttp;
 
 
+import android.content.Context;
+
+import com.sophiemarceauqu.lib_network.okhttp.dns.CachingDns;
+import com.sophiemarceauqu.lib_network.okhttp.https.HttpsUtils;
+import com.sophiemarceauqu.lib_network.okhttp.interceptor.CacheRevalidateInterceptor;
+import com.sophiemarceauqu.lib_network.okhttp.interceptor.CompressionMetricsInterceptor;
 import com.sophiemarceauqu.lib_network.okhttp.response.CommonFileCallback;
 import com.sophiemarceauqu.lib_network.okhttp.response.CommonJsonCallback;
 import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataListener;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestGroup;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestPriority;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLSession;
-
+import okhttp3.Cache;
 import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 
@@ -21,18 +39,25 @@ import okhttp3.Response;
  * 用来发送get, post请求的工具类，包括设置一些请求的共用参数
  */
 public class CommonOkHttpClient {
-    private static final int TIME_OUT = 30;
+    private static final String CACHE_DIR = "okhttp_cache";
+    private static final long CACHE_SIZE = 10 * 1024 * 1024;
     private static OkHttpClient mOkHttpClient;
+    private static final RequestScheduler mScheduler = new RequestScheduler();
+    private static final RequestCoalescer mCoalescer = new RequestCoalescer(mScheduler);
+    private static final OfflineRequestQueue mOfflineQueue = new OfflineRequestQueue();
+    private static volatile CachingDns mDns;
 
-    //完成对okhttpclient的初始化
+    //完成对okhttpclient的初始化，init之前也可以直接使用默认配置
     static {
+        mOkHttpClient = newBuilder(OkHttpConfig.defaults()).build();
+    }
+
+    private static OkHttpClient.Builder newBuilder(OkHttpConfig config) {
         OkHttpClient.Builder okhttpClientBuilder = new OkHttpClient.Builder();
-        okhttpClientBuilder.hostnameVerifier(new HostnameVerifier() {
-            @Override
-            public boolean verify(String hostname, SSLSession session) {
-                return true;
-            }
-        });
+        //使用OkHttp默认的主机名校验；SSLContext在重建client之间共享，重连时恢复TLS会话而不是完整握手
+        HttpsUtils.SSLParams sslParams = config.sslParams != null ? config.sslParams : HttpsUtils.systemSslParams();
+        okhttpClientBuilder.sslSocketFactory(sslParams.sslSocketFactory, sslParams.trustManager);
+        okhttpClientBuilder.certificatePinner(config.certificatePinner);
 
         /**
          * 添加公共请求头
@@ -44,31 +69,230 @@ public class CommonOkHttpClient {
                 return chain.proceed(request);
             }
         });
-        okhttpClientBuilder.connectTimeout(TIME_OUT, TimeUnit.SECONDS);
-        okhttpClientBuilder.readTimeout(TIME_OUT, TimeUnit.SECONDS);
-        okhttpClientBuilder.writeTimeout(TIME_OUT, TimeUnit.SECONDS);
+        //压缩率统计；幂等请求的失败重试由RequestScheduler重新排队，每次重试单独计入
+        okhttpClientBuilder.addInterceptor(new CompressionMetricsInterceptor());
+        for (Interceptor interceptor : config.interceptors) {
+            okhttpClientBuilder.addInterceptor(interceptor);
+        }
+        for (Interceptor interceptor : config.networkInterceptors) {
+            okhttpClientBuilder.addNetworkInterceptor(interceptor);
+        }
+        okhttpClientBuilder.connectTimeout(config.connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        okhttpClientBuilder.readTimeout(config.readTimeoutMillis, TimeUnit.MILLISECONDS);
+        okhttpClientBuilder.writeTimeout(config.writeTimeoutMillis, TimeUnit.MILLISECONDS);
         okhttpClientBuilder.followRedirects(true);
-        mOkHttpClient = okhttpClientBuilder.build();
+        okhttpClientBuilder.connectionPool(new ConnectionPool(config.maxIdleConnections,
+                config.keepAliveMillis, TimeUnit.MILLISECONDS));
+        //HTTP/1.1必须保留，服务端不支持h2时回退
+        okhttpClientBuilder.protocols(config.http2
+                ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : Collections.singletonList(Protocol.HTTP_1_1));
+        if (config.dnsTtlMillis > 0) {
+            CachingDns dns = new CachingDns(config.dnsTtlMillis);
+            okhttpClientBuilder.dns(dns);
+            mDns = dns;
+        } else {
+            mDns = null;
+        }
+        if (config.eventListenerFactory != null) {
+            okhttpClientBuilder.eventListenerFactory(config.eventListenerFactory);
+        }
+        //并发数由RequestScheduler控制，OkHttp自己的限制放宽
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(128);
+        dispatcher.setMaxRequestsPerHost(128);
+        okhttpClientBuilder.dispatcher(dispatcher);
+        return okhttpClientBuilder;
+    }
+
+    /**
+     * 使用默认配置初始化
+     *
+     * @param context
+     */
+    public static void init(Context context) {
+        init(context, OkHttpConfig.defaults());
+    }
+
+    /**
+     * 按配置重建client并开启磁盘缓存，GET请求带ETag/Last-Modified条件请求，未变化时服务端只返回304
+     * 应在Application.onCreate中调用一次，之后发出的请求使用新配置
+     */
+    public static void init(Context context, OkHttpConfig config) {
+        Cache cache = new Cache(new File(context.getCacheDir(), CACHE_DIR), CACHE_SIZE);
+        mOkHttpClient = newBuilder(config)
+                .cache(cache)
+                .addNetworkInterceptor(new CacheRevalidateInterceptor())
+                .build();
+        mOfflineQueue.init(context);
+        prewarm(config.prewarmUrls);
+    }
+
+    /**
+     * 按配置重建client，不开启磁盘缓存和离线队列，用于没有Context的环境(JVM测试，benchmark)
+     */
+    public static void init(OkHttpConfig config) {
+        mOkHttpClient = newBuilder(config).build();
+        prewarm(config.prewarmUrls);
+    }
+
+    /**
+     * 预先建立到各url所在host的连接，用HEAD请求走完DNS，TCP和TLS握手，连接留在连接池中供后续请求复用
+     * 同一host只预热一次，按最低优先级发出，不占用页面请求的并发
+     */
+    public static void prewarm(List<String> urls) {
+        Set<String> origins = new HashSet<>();
+        for (String url : urls) {
+            HttpUrl httpUrl = HttpUrl.parse(url);
+            if (httpUrl == null) {
+                continue;
+            }
+            HttpUrl origin = new HttpUrl.Builder().scheme(httpUrl.scheme()).host(httpUrl.host())
+                    .port(httpUrl.port()).build();
+            if (!origins.add(origin.toString())) {
+                continue;
+            }
+            Call call = mOkHttpClient.newCall(new Request.Builder().url(origin).head().build());
+            mScheduler.enqueue(call, new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) throws IOException {
+                    response.body().close();
+                }
+            }, RequestPriority.PREFETCH);
+        }
+    }
+
+    static OkHttpClient getOkHttpClient() {
+        return mOkHttpClient;
+    }
+
+    /**
+     * 离线队列，可设置重放结果监听
+     */
+    public static OfflineRequestQueue getOfflineQueue() {
+        return mOfflineQueue;
+    }
+
+    /**
+     * 配置各优先级的并发限制
+     */
+    public static RequestScheduler getScheduler() {
+        return mScheduler;
     }
 
-    //get
+    /**
+     * 启用批量请求，传null关闭，已在收集窗口中的请求照常发出
+     */
+    public static void setBatcher(RequestBatcher batcher) {
+        mCoalescer.setBatcher(batcher);
+    }
+
+    /**
+     * 清空DNS缓存，网络切换时由OfflineRequestQueue调用
+     */
+    static void clearDnsCache() {
+        CachingDns dns = mDns;
+        if (dns != null) {
+            dns.clear();
+        }
+    }
+
+    /**
+     * 取消tag(Request.Builder.tag)对应的所有请求，被取消的请求不再回调
+     */
+    public static void cancelTag(Object tag) {
+        mCoalescer.cancelTag(tag);
+        mScheduler.cancelTag(tag);
+    }
+
+    //取消单个调用方，合并的请求不影响其他调用方
+    static void cancel(Call call, DisposeDataListener listener) {
+        if (!mCoalescer.cancel(call, listener)) {
+            mScheduler.cancel(call);
+        }
+    }
+
+    //get，默认按页面数据优先级
     public static Call get(Request request, DisposeDataHandle handle) {
+        return get(request, handle, RequestPriority.FEED);
+    }
+
+    //相同的在途请求会合并，返回的Call可能被多个调用方共享，取消请用cancelTag
+    public static Call get(Request request, DisposeDataHandle handle, RequestPriority priority) {
+        if (isGroupCanceled(request)) {
+            return canceledCall(request);
+        }
+        return mCoalescer.enqueue(mOkHttpClient, request, handle, priority);
+    }
+
+    //post，默认用户操作，立即发出
+    public static Call post(Request request, DisposeDataHandle handle) {
+        return post(request, handle, RequestPriority.INTERACTIVE);
+    }
+
+    public static Call post(Request request, DisposeDataHandle handle, RequestPriority priority) {
+        if (isGroupCanceled(request)) {
+            return canceledCall(request);
+        }
         Call call = mOkHttpClient.newCall(request);
-        call.enqueue(new CommonJsonCallback(handle));
+        mScheduler.enqueue(call, new CommonJsonCallback(handle), priority);
         return call;
     }
 
-    //post
-    public static Call post(Request request, DisposeDataHandle handle) {
+    /**
+     * 网络不可用时进入离线队列的post，网络恢复后自动重放，适合收藏等不需要立即结果的操作
+     * 只有连接阶段失败才入队，请求可能被重放，应该是重复提交结果相同的请求(如设置收藏状态)
+     * 入队时监听者收到ecode为OfflineRequestQueue.OFFLINE_QUEUED的失败回调
+     */
+    public static Call postOffline(Request request, DisposeDataHandle handle) {
+        if (isGroupCanceled(request)) {
+            return canceledCall(request);
+        }
         Call call = mOkHttpClient.newCall(request);
-        call.enqueue(new CommonJsonCallback(handle));
+        mScheduler.enqueue(call, mOfflineQueue.wrap(new CommonJsonCallback(handle), handle.mListener),
+                RequestPriority.INTERACTIVE);
         return call;
     }
 
-    //文件下载
+    //文件下载，大文件优先级最低且限制并发，有未完成的部分时断点续传，不经过http缓存
     public static Call downloadFile(Request request, DisposeDataHandle handle) {
+        if (isGroupCanceled(request)) {
+            return canceledCall(request);
+        }
+        Call call = mOkHttpClient.newCall(CommonFileCallback.resumeRequest(request, handle.mSource));
+        mScheduler.enqueue(call, new CommonFileCallback(handle), RequestPriority.BULK);
+        return call;
+    }
+
+    /**
+     * 大文件分段并发下载，服务端不支持Range或文件较小时退化为downloadFile
+     *
+     * @param segmentCount 分段数，各段计入大文件下载并发数，默认最多2段同时下载，需要更多时调大getScheduler().setMaxBulkRequests
+     */
+    public static SegmentedDownload downloadFileSegmented(Request request, DisposeDataHandle handle,
+                                                          int segmentCount) {
+        SegmentedDownload download = new SegmentedDownload(mOkHttpClient, mScheduler, request, handle, segmentCount);
+        if (isGroupCanceled(request)) {
+            download.cancel();
+            return download;
+        }
+        download.start();
+        return download;
+    }
+
+    //页面已经销毁的请求组不再发出请求
+    private static boolean isGroupCanceled(Request request) {
+        Object tag = request.tag();
+        return tag instanceof RequestGroup && ((RequestGroup) tag).isCanceled();
+    }
+
+    private static Call canceledCall(Request request) {
         Call call = mOkHttpClient.newCall(request);
-        call.enqueue(new CommonFileCallback(handle));
+        call.cancel();
         return call;
     }
 }
@@ -0,0 +1,310 @@
+package com.sophiemarceauqu.lib_network.okhttp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.Log;
+
+import com.sophiemarceauqu.lib_network.okhttp.exception.OkHttpException;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataListener;
+import com.sophiemarceauqu.lib_network.okhttp.response.ResponseDelivery;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+
+/**
+ * 离线请求队列：连接阶段失败(没有网络，DNS解析失败，连接被拒绝)的POST持久化到本地，网络恢复后按提交顺序重放
+ * 只有连接阶段的失败能确定请求没有到达服务端；读超时等请求已发出的失败可能已被服务端处理，不入队也不再重放
+ * 1每个请求一个文件，先写临时文件再改名，进程被杀也不会留下半个请求
+ * 2重放在单个后台线程上顺序执行，同一host复用连接池里的同一个连接
+ * 3服务端有响应(无论成功与否)即移除，仍然连不上则停止本轮重放，等下次网络恢复，请求已发出后失败的直接丢弃
+ */
+public class OfflineRequestQueue {
+    private static final String TAG = "OfflineRequestQueue";
+    private static final String DIR_NAME = "offline_requests";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int FORMAT_VERSION = 1;
+    //请求体超过此大小不入队，如上传文件
+    private static final long MAX_BODY_SIZE = 64 * 1024;
+    private static final int MAX_ENTRIES = 100;
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * 请求已进入离线队列时，DisposeDataListener.onFailure收到的OkHttpException的ecode
+     */
+    public static final int OFFLINE_QUEUED = -4;
+
+    /**
+     * 重放结果回调，在重放线程上执行
+     */
+    public interface ReplayListener {
+        void onReplayed(Request request, int code);
+    }
+
+    private File mDir;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean mReplaying = new AtomicBoolean();
+    private final AtomicLong mSequence = new AtomicLong();
+    private volatile ReplayListener mReplayListener;
+
+    void init(Context context) {
+        mDir = new File(context.getFilesDir(), DIR_NAME);
+        mDir.mkdirs();
+        IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+        //注册时系统会立即投递一次当前网络状态，有网时顺带重放上次遗留的请求
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (!isInitialStickyBroadcast()) {
+                    //网络切换后旧网络的DNS结果可能不可用
+                    CommonOkHttpClient.clearDnsCache();
+                }
+                if (isConnected(context)) {
+                    replay();
+                }
+            }
+        }, filter);
+    }
+
+    public void setReplayListener(ReplayListener listener) {
+        mReplayListener = listener;
+    }
+
+    public int size() {
+        File[] files = listEntries();
+        return files == null ? 0 : files.length;
+    }
+
+    /**
+     * @return 是否入队，未初始化，请求体过大或队列已满时返回false
+     */
+    boolean enqueue(Request request) {
+        if (mDir == null) {
+            return false;
+        }
+        File[] files = listEntries();
+        if (files != null && files.length >= MAX_ENTRIES) {
+            Log.w(TAG, "offline queue full, drop " + request.url());
+            return false;
+        }
+        try {
+            byte[] body = readBody(request.body());
+            if (body == null) {
+                return false;
+            }
+            //文件名按时间+序号排序即为提交顺序
+            String name = String.format("%019d-%06d", System.currentTimeMillis(), mSequence.incrementAndGet() % 1000000);
+            File temp = new File(mDir, name + TEMP_SUFFIX);
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+            try {
+                write(out, request, body);
+            } finally {
+                out.close();
+            }
+            return temp.renameTo(new File(mDir, name));
+        } catch (IOException e) {
+            Log.e(TAG, "enqueue failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * 包装请求回调：连接阶段失败时请求入队，监听者收到ecode为OFFLINE_QUEUED的失败回调
+     */
+    Callback wrap(final Callback delegate, final DisposeDataListener listener) {
+        return new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (call.isCanceled() || !isConnectFailure(e) || !enqueue(call.request())) {
+                    delegate.onFailure(call, e);
+                    return;
+                }
+                final String url = call.request().url().toString();
+                ResponseDelivery.get().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onFailure(new OkHttpException(OFFLINE_QUEUED, url));
+                    }
+                });
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                delegate.onResponse(call, response);
+            }
+        };
+    }
+
+    /**
+     * 重放全部离线请求，已经在重放时忽略
+     */
+    public void replay() {
+        if (mDir == null || !mReplaying.compareAndSet(false, true)) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    replayAll(CommonOkHttpClient.getOkHttpClient());
+                } finally {
+                    mReplaying.set(false);
+                }
+            }
+        });
+    }
+
+    private void replayAll(OkHttpClient client) {
+        File[] files = listEntries();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            Request request;
+            long createdAt;
+            try {
+                DataInputStream in = new DataInputStream(new FileInputStream(file));
+                try {
+                    createdAt = in.readLong();
+                    request = read(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "drop corrupted entry " + file.getName(), e);
+                file.delete();
+                continue;
+            }
+            if (System.currentTimeMillis() - createdAt > MAX_AGE_MILLIS) {
+                file.delete();
+                continue;
+            }
+            int code;
+            try {
+                Response response = client.newCall(request).execute();
+                code = response.code();
+                response.body().close();
+            } catch (IOException e) {
+                if (isConnectFailure(e)) {
+                    //仍然没有网络，剩下的留到下次
+                    return;
+                }
+                //请求已经发出，服务端可能已经处理，重放可能重复提交
+                Log.w(TAG, "drop entry failed after sent " + request.url(), e);
+                file.delete();
+                continue;
+            }
+            file.delete();
+            ReplayListener listener = mReplayListener;
+            if (listener != null) {
+                listener.onReplayed(request, code);
+            }
+        }
+    }
+
+    /**
+     * 是否在建立连接阶段失败，此时请求一定没有发到服务端，可以安全地稍后重放
+     */
+    static boolean isConnectFailure(IOException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnknownHostException || cause instanceof ConnectException
+                    || cause instanceof NoRouteToHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private File[] listEntries() {
+        if (mDir == null) {
+            return null;
+        }
+        return mDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.getName().endsWith(TEMP_SUFFIX);
+            }
+        });
+    }
+
+    private static byte[] readBody(RequestBody body) throws IOException {
+        if (body == null) {
+            return new byte[0];
+        }
+        long length = body.contentLength();
+        if (length < 0 || length > MAX_BODY_SIZE) {
+            return null;
+        }
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return buffer.readByteArray();
+    }
+
+    private static void write(DataOutputStream out, Request request, byte[] body) throws IOException {
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(request.method());
+        out.writeUTF(request.url().toString());
+        Headers headers = request.headers();
+        out.writeInt(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            out.writeUTF(headers.name(i));
+            out.writeUTF(headers.value(i));
+        }
+        MediaType contentType = request.body() == null ? null : request.body().contentType();
+        out.writeUTF(contentType == null ? "" : contentType.toString());
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    private static Request read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("unknown format");
+        }
+        String method = in.readUTF();
+        Request.Builder builder = new Request.Builder().url(in.readUTF());
+        int headerCount = in.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            builder.addHeader(in.readUTF(), in.readUTF());
+        }
+        String contentType = in.readUTF();
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        builder.method(method, RequestBody.create(contentType.isEmpty() ? null : MediaType.parse(contentType), body));
+        return builder.build();
+    }
+
+    private static boolean isConnected(Context context) {
+        ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo info = manager == null ? null : manager.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
+}
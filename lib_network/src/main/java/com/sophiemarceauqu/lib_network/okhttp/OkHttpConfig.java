@@ -0,0 +1,192 @@
+package com.sophiemarceauqu.lib_network.okhttp;
+
+import com.sophiemarceauqu.lib_network.okhttp.dns.CachingDns;
+import com.sophiemarceauqu.lib_network.okhttp.https.HttpsUtils;
+import com.sophiemarceauqu.lib_network.okhttp.metrics.NetworkMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CertificatePinner;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+
+/**
+ * CommonOkHttpClient的配置，通过Builder创建后传给CommonOkHttpClient.init(Context, OkHttpConfig)
+ * 1超时，连接池大小及空闲连接保活时间
+ * 2是否协商HTTP/2，同一host的请求在一个连接上多路复用
+ * 3本地DNS缓存的有效期，0表示不缓存
+ * 4额外的应用拦截器和网络拦截器
+ * 5请求事件监听，默认为NetworkMetrics分阶段耗时统计
+ * 6https的信任证书和证书锁定，默认只信任系统证书，不锁定
+ */
+public class OkHttpConfig {
+    final long connectTimeoutMillis;
+    final long readTimeoutMillis;
+    final long writeTimeoutMillis;
+    final int maxIdleConnections;
+    final long keepAliveMillis;
+    final boolean http2;
+    final long dnsTtlMillis;
+    final List<String> prewarmUrls;
+    final EventListener.Factory eventListenerFactory;
+    final List<Interceptor> interceptors;
+    final List<Interceptor> networkInterceptors;
+    final HttpsUtils.SSLParams sslParams;
+    final CertificatePinner certificatePinner;
+
+    private OkHttpConfig(Builder builder) {
+        connectTimeoutMillis = builder.connectTimeoutMillis;
+        readTimeoutMillis = builder.readTimeoutMillis;
+        writeTimeoutMillis = builder.writeTimeoutMillis;
+        maxIdleConnections = builder.maxIdleConnections;
+        keepAliveMillis = builder.keepAliveMillis;
+        http2 = builder.http2;
+        dnsTtlMillis = builder.dnsTtlMillis;
+        prewarmUrls = Collections.unmodifiableList(new ArrayList<>(builder.prewarmUrls));
+        eventListenerFactory = builder.eventListenerFactory;
+        interceptors = Collections.unmodifiableList(new ArrayList<>(builder.interceptors));
+        networkInterceptors = Collections.unmodifiableList(new ArrayList<>(builder.networkInterceptors));
+        sslParams = builder.sslParams;
+        certificatePinner = builder.certificatePinner;
+    }
+
+    /**
+     * 默认配置，与原先写死的参数一致，另外开启DNS缓存
+     */
+    public static OkHttpConfig defaults() {
+        return new Builder().build();
+    }
+
+    public Builder newBuilder() {
+        Builder builder = new Builder();
+        builder.connectTimeoutMillis = connectTimeoutMillis;
+        builder.readTimeoutMillis = readTimeoutMillis;
+        builder.writeTimeoutMillis = writeTimeoutMillis;
+        builder.maxIdleConnections = maxIdleConnections;
+        builder.keepAliveMillis = keepAliveMillis;
+        builder.http2 = http2;
+        builder.dnsTtlMillis = dnsTtlMillis;
+        builder.prewarmUrls.addAll(prewarmUrls);
+        builder.eventListenerFactory = eventListenerFactory;
+        builder.interceptors.addAll(interceptors);
+        builder.networkInterceptors.addAll(networkInterceptors);
+        builder.sslParams = sslParams;
+        builder.certificatePinner = certificatePinner;
+        return builder;
+    }
+
+    public static class Builder {
+        private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+        private long readTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+        private long writeTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+        //与OkHttp默认连接池一致
+        private int maxIdleConnections = 5;
+        private long keepAliveMillis = TimeUnit.MINUTES.toMillis(5);
+        private boolean http2 = true;
+        private long dnsTtlMillis = CachingDns.DEFAULT_TTL_MILLIS;
+        private final List<String> prewarmUrls = new ArrayList<>();
+        private EventListener.Factory eventListenerFactory = NetworkMetrics.FACTORY;
+        private final List<Interceptor> interceptors = new ArrayList<>();
+        private final List<Interceptor> networkInterceptors = new ArrayList<>();
+        private HttpsUtils.SSLParams sslParams;
+        private CertificatePinner certificatePinner = CertificatePinner.DEFAULT;
+
+        public Builder connectTimeout(long timeout, TimeUnit unit) {
+            connectTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public Builder readTimeout(long timeout, TimeUnit unit) {
+            readTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public Builder writeTimeout(long timeout, TimeUnit unit) {
+            writeTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * @param maxIdleConnections 连接池最多保留的空闲连接数
+         * @param keepAlive          空闲连接保活时间，超过后关闭
+         */
+        public Builder connectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+            if (maxIdleConnections < 0) {
+                throw new IllegalArgumentException("maxIdleConnections < 0: " + maxIdleConnections);
+            }
+            this.maxIdleConnections = maxIdleConnections;
+            keepAliveMillis = unit.toMillis(keepAlive);
+            return this;
+        }
+
+        /**
+         * @param http2 true时https连接通过ALPN协商HTTP/2，false时只使用HTTP/1.1
+         */
+        public Builder http2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        /**
+         * @param ttl DNS结果的缓存时间，0表示每次都查询系统DNS
+         */
+        public Builder dnsTtl(long ttl, TimeUnit unit) {
+            dnsTtlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * init时预先建立到这些地址所在host的连接(DNS，TCP，TLS)，首个请求直接复用
+         */
+        public Builder prewarm(String... urls) {
+            Collections.addAll(prewarmUrls, urls);
+            return this;
+        }
+
+        /**
+         * @param factory 为每个请求创建事件监听，传null关闭统计
+         */
+        public Builder eventListenerFactory(EventListener.Factory factory) {
+            eventListenerFactory = factory;
+            return this;
+        }
+
+        public Builder addInterceptor(Interceptor interceptor) {
+            interceptors.add(interceptor);
+            return this;
+        }
+
+        public Builder addNetworkInterceptor(Interceptor interceptor) {
+            networkInterceptors.add(interceptor);
+            return this;
+        }
+
+        /**
+         * @param sslParams 由HttpsUtils.sslParams创建，null时使用HttpsUtils.systemSslParams
+         *                  同一个SSLParams应在多次配置之间复用，TLS会话缓存跟随它
+         */
+        public Builder sslParams(HttpsUtils.SSLParams sslParams) {
+            this.sslParams = sslParams;
+            return this;
+        }
+
+        /**
+         * 证书锁定，服务端证书链中没有匹配的公钥时连接失败
+         * 每个host至少锁定两个公钥(当前证书和备用证书)，否则换证书时旧版本app将无法连接
+         */
+        public Builder certificatePinner(CertificatePinner certificatePinner) {
+            if (certificatePinner == null) {
+                throw new IllegalArgumentException("certificatePinner == null");
+            }
+            this.certificatePinner = certificatePinner;
+            return this;
+        }
+
+        public OkHttpConfig build() {
+            return new OkHttpConfig(this);
+        }
+    }
+}
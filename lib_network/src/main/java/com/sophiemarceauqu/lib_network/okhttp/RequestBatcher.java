@@ -0,0 +1,249 @@
+package com.sophiemarceauqu.lib_network.okhttp;
+
+import com.sophiemarceauqu.lib_network.okhttp.batch.BatchCodec;
+import com.sophiemarceauqu.lib_network.okhttp.exception.OkHttpException;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestPriority;
+import com.sophiemarceauqu.lib_network.okhttp.response.CommonJsonCallback;
+import com.sophiemarceauqu.lib_network.okhttp.response.ResponseDelivery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 把短时间内发出的多个GET合并成一次批量请求，服务端按BatchCodec的格式逐个处理后一起返回
+ * 1只合并addEndpoint登记过的接口，INTERACTIVE优先级的请求不等待，照常单独发出
+ * 2第一个请求到达后等待window毫秒收集，达到maxBatchSize时立即发出
+ * 3窗口内只剩一个请求时按普通请求发出；批量接口返回非2xx时退回逐个单独请求
+ * 4单个请求取消后不再随批量发出，已发出的批量中被取消的结果直接丢弃
+ * 5批量请求是一次POST，参与批量的GET不经过http缓存(不读缓存也不做条件请求)，也不会被RequestScheduler按RetryPolicy重试；
+ * 需要缓存或重试的接口不要addEndpoint
+ * 通过CommonOkHttpClient.setBatcher启用，与请求合并配合：相同的请求先合并，再参与批量
+ */
+public class RequestBatcher {
+    private static final int NETWORK_ERROR = -1;
+    private static final int JSON_ERROR = -2;
+    private static final String EMPTY_MSG = "";
+
+    private static final ScheduledExecutorService sTimer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "okhttp-batcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final String mBatchUrl;
+    private final long mWindowMillis;
+    private final int mMaxBatchSize;
+    private final Set<String> mEndpoints = new HashSet<>();
+
+    private List<Entry> mPending = new ArrayList<>();
+
+    /**
+     * @param batchUrl     批量接口地址
+     * @param windowMillis 收集窗口，建议10~50ms，太长会推迟首屏数据
+     * @param maxBatchSize 单次批量的最大请求数
+     */
+    public RequestBatcher(String batchUrl, long windowMillis, int maxBatchSize) {
+        mBatchUrl = batchUrl;
+        mWindowMillis = windowMillis;
+        mMaxBatchSize = Math.max(2, maxBatchSize);
+    }
+
+    /**
+     * 登记可以批量的接口，按不含参数的地址匹配
+     */
+    public RequestBatcher addEndpoint(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            throw new IllegalArgumentException("unexpected url: " + url);
+        }
+        synchronized (mEndpoints) {
+            mEndpoints.add(endpointOf(httpUrl));
+        }
+        return this;
+    }
+
+    /**
+     * @return false表示不能批量，由调用方按普通请求发出
+     */
+    boolean offer(Call call, DisposeDataHandle handle, RequestPriority priority) {
+        Request request = call.request();
+        if (handle.mClass == null || priority == RequestPriority.INTERACTIVE
+                || !"GET".equals(request.method())) {
+            return false;
+        }
+        synchronized (mEndpoints) {
+            if (!mEndpoints.contains(endpointOf(request.url()))) {
+                return false;
+            }
+        }
+        List<Entry> full = null;
+        boolean first;
+        synchronized (this) {
+            first = mPending.isEmpty();
+            mPending.add(new Entry(call, handle, priority));
+            if (mPending.size() >= mMaxBatchSize) {
+                full = drain();
+            }
+        }
+        if (full != null) {
+            send(full);
+        } else if (first) {
+            sTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    List<Entry> entries;
+                    synchronized (RequestBatcher.this) {
+                        entries = drain();
+                    }
+                    send(entries);
+                }
+            }, mWindowMillis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    //调用时需持有this锁
+    private List<Entry> drain() {
+        List<Entry> entries = mPending;
+        mPending = new ArrayList<>();
+        return entries;
+    }
+
+    private void send(List<Entry> entries) {
+        final List<Entry> live = new ArrayList<>(entries.size());
+        RequestPriority priority = RequestPriority.BULK;
+        for (Entry entry : entries) {
+            if (!entry.mCall.isCanceled()) {
+                live.add(entry);
+                if (entry.mPriority.ordinal() < priority.ordinal()) {
+                    priority = entry.mPriority;
+                }
+            }
+        }
+        if (live.size() < 2) {
+            sendEach(live);
+            return;
+        }
+        List<Request> requests = new ArrayList<>(live.size());
+        final List<Class<?>> classes = new ArrayList<>(live.size());
+        for (Entry entry : live) {
+            requests.add(entry.mCall.request());
+            classes.add(entry.mHandle.mClass);
+        }
+        Request batch;
+        try {
+            batch = new Request.Builder().url(mBatchUrl).post(BatchCodec.encodeRequests(requests)).build();
+        } catch (IOException e) {
+            sendEach(live);
+            return;
+        }
+        final Call batchCall = CommonOkHttpClient.getOkHttpClient().newCall(batch);
+        CommonOkHttpClient.getScheduler().enqueue(batchCall, new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                for (Entry entry : live) {
+                    deliver(entry, null, new OkHttpException(NETWORK_ERROR, e));
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                List<BatchCodec.Result> results;
+                try {
+                    if (!response.isSuccessful()) {
+                        //服务端不支持批量或批量接口异常，退回逐个请求
+                        sendEach(live);
+                        return;
+                    }
+                    results = BatchCodec.decodeResponses(response.body().charStream(), classes);
+                } catch (IOException e) {
+                    failAll(live, e);
+                    return;
+                } catch (RuntimeException e) {
+                    //与CommonJsonCallback一致，实体类型不匹配等解析异常也要回调，不能让调用方一直等待
+                    failAll(live, e);
+                    return;
+                } finally {
+                    response.close();
+                }
+                for (int i = 0; i < live.size(); i++) {
+                    BatchCodec.Result result = results.get(i);
+                    if (result.model != null && result.status >= 200 && result.status < 300) {
+                        deliver(live.get(i), result.model, null);
+                    } else if (result.status >= 200 && result.status < 300) {
+                        deliver(live.get(i), null, new OkHttpException(JSON_ERROR, EMPTY_MSG));
+                    } else {
+                        deliver(live.get(i), null, new OkHttpException(NETWORK_ERROR, result.status));
+                    }
+                }
+            }
+        }, priority);
+    }
+
+    private void failAll(List<Entry> entries, Exception e) {
+        for (Entry entry : entries) {
+            deliver(entry, null, new OkHttpException(JSON_ERROR, e));
+        }
+    }
+
+    private void sendEach(List<Entry> entries) {
+        RequestScheduler scheduler = CommonOkHttpClient.getScheduler();
+        for (Entry entry : entries) {
+            //原来的Call还没有执行过，可以直接发出
+            scheduler.enqueue(entry.mCall, new CommonJsonCallback(entry.mHandle), entry.mPriority);
+        }
+    }
+
+    private void deliver(final Entry entry, final Object model, final OkHttpException error) {
+        if (entry.mCall.isCanceled()) {
+            return;
+        }
+        ResponseDelivery.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (entry.mCall.isCanceled()) {
+                    return;
+                }
+                if (error == null) {
+                    entry.mHandle.mListener.onSuccess(model);
+                } else {
+                    entry.mHandle.mListener.onFailure(error);
+                }
+            }
+        });
+    }
+
+    private static String endpointOf(HttpUrl url) {
+        return url.scheme() + "://" + url.host() + ':' + url.port() + url.encodedPath();
+    }
+
+    private static class Entry {
+        private final Call mCall;
+        private final DisposeDataHandle mHandle;
+        private final RequestPriority mPriority;
+
+        Entry(Call call, DisposeDataHandle handle, RequestPriority priority) {
+            mCall = call;
+            mHandle = handle;
+            mPriority = priority;
+        }
+    }
+}
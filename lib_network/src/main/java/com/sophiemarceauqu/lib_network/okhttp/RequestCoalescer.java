@@ -0,0 +1,183 @@
+package com.sophiemarceauqu.lib_network.okhttp;
+
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataListener;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestPriority;
+import com.sophiemarceauqu.lib_network.okhttp.response.CommonJsonCallback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * 合并相同的在途请求(single-flight)
+ * 1method + url(含参数) + 请求头 + 解析类型都相同的请求，在前一个返回之前只发一次网络请求，
+ * 结果分发给所有监听者，监听者之间共享同一个实体对象，不要修改它
+ * 2只合并幂等的GET/HEAD请求，POST可能有副作用，每次都真正发出
+ * 3结果在主线程分发时才移除在途记录，之后的相同请求会重新发起
+ * 4合并后的请求以在途记录本身为tag，按调用方的tag取消只移除对应的监听者，
+ * 所有监听者都取消后才真正取消网络请求
+ */
+class RequestCoalescer {
+    private final HashMap<String, InFlight> mInFlight = new HashMap<>();
+    private final RequestScheduler mScheduler;
+    private volatile RequestBatcher mBatcher;
+
+    RequestCoalescer(RequestScheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    void setBatcher(RequestBatcher batcher) {
+        mBatcher = batcher;
+    }
+
+    Call enqueue(OkHttpClient client, Request request, DisposeDataHandle handle, RequestPriority priority) {
+        String key = keyOf(request, handle.mClass);
+        if (key == null) {
+            Call call = client.newCall(request);
+            mScheduler.enqueue(call, new CommonJsonCallback(handle), priority);
+            return call;
+        }
+        Waiter waiter = new Waiter(handle.mListener, request.tag());
+        InFlight flight;
+        boolean created = false;
+        synchronized (mInFlight) {
+            flight = mInFlight.get(key);
+            if (flight == null) {
+                flight = new InFlight(key);
+                flight.mCall = client.newCall(request.newBuilder().tag(flight).build());
+                mInFlight.put(key, flight);
+                created = true;
+            }
+            flight.mWaiters.add(waiter);
+        }
+        if (created) {
+            DisposeDataHandle flightHandle = new DisposeDataHandle(flight, handle.mClass);
+            RequestBatcher batcher = mBatcher;
+            if (batcher == null || !batcher.offer(flight.mCall, flightHandle, priority)) {
+                mScheduler.enqueue(flight.mCall, new CommonJsonCallback(flightHandle), priority);
+            }
+        } else {
+            //后加入的请求优先级更高时提升整个请求
+            mScheduler.raise(flight.mCall, priority);
+        }
+        return flight.mCall;
+    }
+
+    void cancelTag(Object tag) {
+        List<Call> canceled = new ArrayList<>();
+        synchronized (mInFlight) {
+            for (Iterator<InFlight> it = mInFlight.values().iterator(); it.hasNext(); ) {
+                InFlight flight = it.next();
+                for (Iterator<Waiter> waiters = flight.mWaiters.iterator(); waiters.hasNext(); ) {
+                    if (tag.equals(waiters.next().mTag)) {
+                        waiters.remove();
+                    }
+                }
+                if (flight.mWaiters.isEmpty()) {
+                    it.remove();
+                    canceled.add(flight.mCall);
+                }
+            }
+        }
+        for (Call call : canceled) {
+            mScheduler.cancel(call);
+        }
+    }
+
+    /**
+     * 取消单个监听者，call是合并后的请求时只移除该监听者，没有监听者时才取消请求
+     *
+     * @return call是否是合并的请求
+     */
+    boolean cancel(Call call, DisposeDataListener listener) {
+        boolean empty = false;
+        synchronized (mInFlight) {
+            InFlight found = null;
+            for (InFlight flight : mInFlight.values()) {
+                if (flight.mCall == call) {
+                    found = flight;
+                    break;
+                }
+            }
+            if (found == null) {
+                return false;
+            }
+            for (Iterator<Waiter> waiters = found.mWaiters.iterator(); waiters.hasNext(); ) {
+                if (waiters.next().mListener == listener) {
+                    waiters.remove();
+                }
+            }
+            if (found.mWaiters.isEmpty()) {
+                mInFlight.remove(found.mKey);
+                empty = true;
+            }
+        }
+        if (empty) {
+            mScheduler.cancel(call);
+        }
+        return true;
+    }
+
+    private static String keyOf(Request request, Class<?> clazz) {
+        String method = request.method();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return null;
+        }
+        return method + ' ' + request.url() + '\n' + request.headers()
+                + (clazz == null ? "" : clazz.getName());
+    }
+
+    private static class Waiter {
+        private final DisposeDataListener mListener;
+        private final Object mTag;
+
+        Waiter(DisposeDataListener listener, Object tag) {
+            mListener = listener;
+            mTag = tag;
+        }
+    }
+
+    /**
+     * 一个在途请求及等待它的全部监听者，作为真正请求的监听者把结果分发出去
+     */
+    private class InFlight implements DisposeDataListener {
+        private final String mKey;
+        private final ArrayList<Waiter> mWaiters = new ArrayList<>();
+        private Call mCall;
+
+        InFlight(String key) {
+            mKey = key;
+        }
+
+        private List<Waiter> finish() {
+            synchronized (mInFlight) {
+                if (mInFlight.get(mKey) == this) {
+                    mInFlight.remove(mKey);
+                }
+                List<Waiter> waiters = new ArrayList<>(mWaiters);
+                mWaiters.clear();
+                return waiters;
+            }
+        }
+
+        @Override
+        public void onSuccess(Object responseObj) {
+            for (Waiter waiter : finish()) {
+                waiter.mListener.onSuccess(responseObj);
+            }
+        }
+
+        @Override
+        public void onFailure(Object responseObj) {
+            for (Waiter waiter : finish()) {
+                waiter.mListener.onFailure(responseObj);
+            }
+        }
+    }
+}
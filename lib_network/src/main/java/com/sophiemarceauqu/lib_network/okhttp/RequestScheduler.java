@@ -0,0 +1,320 @@
+package com.sophiemarceauqu.lib_network.okhttp;
+
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestPriority;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+/**
+ * 按优先级调度请求，OkHttp自带的Dispatcher只按先后顺序排队
+ * 1排队的请求按优先级发出，同优先级先进先出
+ * 2限制总并发数，每个host的并发数(可单独配置)，以及大文件下载的并发数
+ * 3INTERACTIVE请求不受以上限制，立即发出
+ * 4按tag取消，排队中的直接丢弃，已发出的cancel，被取消的请求都不再回调
+ * 5失败的幂等请求按RetryPolicy先释放名额，退避时间到后再重新排队，等待期间不占用线程和名额
+ */
+public class RequestScheduler {
+    private int mMaxRequests = 64;
+    private int mMaxRequestsPerHost = 5;
+    private int mMaxBulkRequests = 2;
+    private final HashMap<String, Integer> mHostLimits = new HashMap<>();
+
+    private static final ScheduledExecutorService sRetryTimer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "okhttp-retry");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final PriorityQueue<Entry> mPending = new PriorityQueue<>();
+    private final List<Entry> mRunning = new ArrayList<>();
+    private long mSequence;
+    private volatile RetryPolicy mRetryPolicy = new RetryPolicy();
+    private final Runnable mPromoteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            promote();
+        }
+    };
+
+    public void setMaxRequests(int maxRequests) {
+        synchronized (this) {
+            mMaxRequests = maxRequests;
+        }
+        promote();
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        synchronized (this) {
+            mMaxRequestsPerHost = maxRequestsPerHost;
+        }
+        promote();
+    }
+
+    /**
+     * 单独配置某个host的并发数，如图片或下载服务器
+     */
+    public void setMaxRequestsPerHost(String host, int maxRequests) {
+        synchronized (this) {
+            mHostLimits.put(host, maxRequests);
+        }
+        promote();
+    }
+
+    public void setMaxBulkRequests(int maxBulkRequests) {
+        synchronized (this) {
+            mMaxBulkRequests = maxBulkRequests;
+        }
+        promote();
+    }
+
+    /**
+     * @param retryPolicy 传new RetryPolicy(0, 0, 0)关闭重试
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
+    public void enqueue(Call call, Callback callback, RequestPriority priority) {
+        synchronized (this) {
+            mPending.add(new Entry(call, call, callback, priority, mSequence++, 0, 0));
+        }
+        promote();
+    }
+
+    /**
+     * 提高排队中请求的优先级，已发出或优先级已经更高时不做处理
+     */
+    void raise(Call call, RequestPriority priority) {
+        synchronized (this) {
+            for (Iterator<Entry> it = mPending.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.mOrigin == call) {
+                    if (priority.ordinal() < entry.mPriority.ordinal()) {
+                        it.remove();
+                        mPending.add(new Entry(entry.mCall, entry.mOrigin, entry.mCallback, priority,
+                                entry.mSequence, entry.mAttempt, entry.mNotBefore));
+                    }
+                    break;
+                }
+            }
+        }
+        promote();
+    }
+
+    /**
+     * 取消单个请求，排队中的直接丢弃，正在重试的一并取消
+     */
+    void cancel(Call call) {
+        List<Call> retries = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Entry> it = mPending.iterator(); it.hasNext(); ) {
+                if (it.next().mOrigin == call) {
+                    it.remove();
+                    break;
+                }
+            }
+            for (Entry entry : mRunning) {
+                if (entry.mOrigin == call && entry.mCall != call) {
+                    retries.add(entry.mCall);
+                }
+            }
+        }
+        call.cancel();
+        for (Call retry : retries) {
+            retry.cancel();
+        }
+    }
+
+    public void cancelTag(Object tag) {
+        List<Call> running = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Entry> it = mPending.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (tag.equals(entry.mCall.request().tag())) {
+                    entry.mCall.cancel();
+                    entry.mOrigin.cancel();
+                    it.remove();
+                }
+            }
+            for (Entry entry : mRunning) {
+                if (tag.equals(entry.mCall.request().tag())) {
+                    running.add(entry.mCall);
+                    //重试中的请求同时取消原Call，避免回调前再次排队
+                    running.add(entry.mOrigin);
+                }
+            }
+        }
+        for (Call call : running) {
+            call.cancel();
+        }
+    }
+
+    public synchronized int pendingCount() {
+        return mPending.size();
+    }
+
+    public synchronized int runningCount() {
+        return mRunning.size();
+    }
+
+    private void promote() {
+        List<Entry> ready = new ArrayList<>();
+        synchronized (this) {
+            List<Entry> blocked = new ArrayList<>();
+            long now = System.nanoTime();
+            while (!mPending.isEmpty()) {
+                Entry entry = mPending.poll();
+                if (entry.mNotBefore - now > 0) {
+                    //重试的退避时间还没到，到时由sRetryTimer再次promote
+                    blocked.add(entry);
+                    continue;
+                }
+                if (entry.mPriority == RequestPriority.INTERACTIVE || canRun(entry)) {
+                    mRunning.add(entry);
+                    ready.add(entry);
+                } else {
+                    blocked.add(entry);
+                    if (mRunning.size() >= mMaxRequests) {
+                        break;
+                    }
+                    //只是这个host或下载数满了，后面其他host的请求还可以发
+                }
+            }
+            mPending.addAll(blocked);
+        }
+        for (Entry entry : ready) {
+            entry.mCall.enqueue(entry);
+        }
+    }
+
+    private boolean canRun(Entry entry) {
+        if (mRunning.size() >= mMaxRequests) {
+            return false;
+        }
+        String host = entry.host();
+        Integer hostLimit = mHostLimits.get(host);
+        int maxPerHost = hostLimit != null ? hostLimit : mMaxRequestsPerHost;
+        int sameHost = 0;
+        int bulk = 0;
+        for (Entry running : mRunning) {
+            if (running.host().equals(host)) {
+                sameHost++;
+            }
+            if (running.mPriority == RequestPriority.BULK) {
+                bulk++;
+            }
+        }
+        if (sameHost >= maxPerHost) {
+            return false;
+        }
+        return entry.mPriority != RequestPriority.BULK || bulk < mMaxBulkRequests;
+    }
+
+    private void finished(Entry entry) {
+        synchronized (this) {
+            mRunning.remove(entry);
+        }
+        promote();
+    }
+
+    /**
+     * 一个排队或运行中的请求，同时作为OkHttp的回调，结束时释放名额
+     * 名额在回调返回时释放，回调要在返回前读完响应体，不能把未读的流交给其他线程
+     * 重试时用mOrigin.clone()生成新的Entry，mOrigin始终是调用方持有的Call，取消按它匹配
+     */
+    private class Entry implements Callback, Comparable<Entry> {
+        private final Call mCall;
+        private final Call mOrigin;
+        private final Callback mCallback;
+        private final RequestPriority mPriority;
+        private final long mSequence;
+        private final int mAttempt;
+        //System.nanoTime()，之前不发出
+        private final long mNotBefore;
+
+        Entry(Call call, Call origin, Callback callback, RequestPriority priority, long sequence, int attempt,
+              long notBefore) {
+            mCall = call;
+            mOrigin = origin;
+            mCallback = callback;
+            mPriority = priority;
+            mSequence = sequence;
+            mAttempt = attempt;
+            mNotBefore = notBefore;
+        }
+
+        String host() {
+            return mCall.request().url().host();
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (mPriority != other.mPriority) {
+                return mPriority.ordinal() - other.mPriority.ordinal();
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            try {
+                if (!retry(call, mRetryPolicy.delayAfterFailure(call.request(), e, mAttempt))) {
+                    mCallback.onFailure(delivered(call), e);
+                }
+            } finally {
+                finished(this);
+            }
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            try {
+                if (retry(call, mRetryPolicy.delayAfterResponse(response, mAttempt))) {
+                    response.close();
+                    return;
+                }
+                mCallback.onResponse(delivered(call), response);
+            } finally {
+                finished(this);
+            }
+        }
+
+        //延迟后重新排队，本次的名额照常在回调返回时释放
+        private boolean retry(Call call, long delayMillis) {
+            if (delayMillis < 0 || call.isCanceled() || mOrigin.isCanceled()) {
+                return false;
+            }
+            Entry retry = new Entry(mOrigin.clone(), mOrigin, mCallback, mPriority, mSequence, mAttempt + 1,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+            synchronized (RequestScheduler.this) {
+                mPending.add(retry);
+            }
+            sRetryTimer.schedule(mPromoteRunnable, delayMillis, TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        //重试期间调用方直接cancel了原Call，回调看到的Call也要是已取消状态
+        private Call delivered(Call call) {
+            if (call != mOrigin && mOrigin.isCanceled()) {
+                call.cancel();
+            }
+            return call;
+        }
+    }
+}
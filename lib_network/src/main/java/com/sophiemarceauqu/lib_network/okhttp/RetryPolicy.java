@@ -0,0 +1,120 @@
+package com.sophiemarceauqu.lib_network.okhttp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Random;
+
+import javax.net.ssl.SSLException;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 幂等请求失败重试策略，由RequestScheduler使用：失败的请求先释放并发名额，等待退避时间后重新排队，
+ * 等待期间不占用线程和名额
+ * 1只重试GET/HEAD/PUT/DELETE/OPTIONS，POST可能有副作用，交给离线队列处理
+ * 2408，429，5xx和请求已发出后的网络异常(读超时，连接被重置等)才重试；
+ * DNS解析失败，连接失败(OkHttp已经尝试过所有路由)，TLS握手和证书固定失败，重试也不会成功
+ * 3指数退避加随机抖动(full jitter)，避免大量客户端同时重试；服务端给了Retry-After时按其等待
+ */
+public class RetryPolicy {
+    /**
+     * 不重试
+     */
+    static final long NO_RETRY = -1;
+
+    private static final int DEFAULT_MAX_RETRIES = 2;
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 8000;
+
+    private final int mMaxRetries;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final Random mRandom = new Random();
+
+    public RetryPolicy() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * @param maxRetries 最多重试次数，0表示不重试
+     */
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        mMaxRetries = maxRetries;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param attempt 已经重试过的次数
+     * @return 重新排队前等待的毫秒数，不重试时返回NO_RETRY
+     */
+    long delayAfterFailure(Request request, IOException e, int attempt) {
+        if (attempt >= mMaxRetries || !isIdempotent(request.method()) || !isRetryable(e)) {
+            return NO_RETRY;
+        }
+        return backoff(attempt);
+    }
+
+    /**
+     * @param attempt 已经重试过的次数
+     * @return 重新排队前等待的毫秒数，不重试时返回NO_RETRY
+     */
+    long delayAfterResponse(Response response, int attempt) {
+        if (attempt >= mMaxRetries || !isIdempotent(response.request().method())
+                || !isRetryable(response.code())) {
+            return NO_RETRY;
+        }
+        long delay = retryAfter(response);
+        return delay >= 0 ? delay : backoff(attempt);
+    }
+
+    private static boolean isIdempotent(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method)
+                || "DELETE".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code >= 500;
+    }
+
+    private static boolean isRetryable(IOException e) {
+        if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+            //被取消或线程中断
+            return false;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnknownHostException || cause instanceof ConnectException
+                    || cause instanceof NoRouteToHostException || cause instanceof SSLException) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //[0, min(max, base * 2^attempt))内随机
+    private long backoff(int attempt) {
+        long cap = Math.min(mMaxDelayMillis, mBaseDelayMillis << Math.min(attempt, 16));
+        return (long) (mRandom.nextDouble() * cap);
+    }
+
+    /**
+     * @return 服务端要求的等待毫秒数，没有或无法解析时返回-1
+     */
+    private long retryAfter(Response response) {
+        String value = response.header("Retry-After");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.min(mMaxDelayMillis, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            //HTTP日期格式按普通退避处理
+            return -1;
+        }
+    }
+}
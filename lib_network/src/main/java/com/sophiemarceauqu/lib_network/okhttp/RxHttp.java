@@ -0,0 +1,204 @@
+package com.sophiemarceauqu.lib_network.okhttp;
+
+import com.sophiemarceauqu.lib_network.okhttp.exception.OkHttpException;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataListener;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestPriority;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
+
+import org.reactivestreams.Publisher;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * RxJava2形式的请求，结果按Class类型化，不需要再强转
+ * 1get/post返回Single，与CommonOkHttpClient.get/post走同样的调度，合并与解析线程，
+ * 结果在主线程发射，需要在其他线程处理时自行observeOn
+ * 2dispose即取消：合并的请求只移除当前订阅者，最后一个订阅者取消时才取消网络请求
+ * 3tag为已销毁的RequestGroup时请求不会发出，Single也不会结束
+ * 4pages按下游的request(n)逐页同步拉取，下游处理不过来时不会提前请求下一页，配合subscribeOn(Schedulers.io())使用；
+ * 分页请求直接在订阅线程上execute，不经过RequestScheduler排队和并发限制，也不参与合并和重试，
+ * tag为RequestGroup时不会随页面销毁取消，需要自行dispose
+ */
+public class RxHttp {
+    private static final int NETWORK_ERROR = -1;
+    private static final int JSON_ERROR = -2;
+    private static final String EMPTY_MSG = "";
+
+    /**
+     * 分页请求的生成方式
+     */
+    public interface PageRequest<T> {
+        /**
+         * @param page     从0开始的页码
+         * @param previous 上一页的结果，第一页时为null
+         * @return 这一页的请求，没有更多页时返回null
+         */
+        Request create(int page, T previous);
+    }
+
+    public static <T> Single<T> get(Request request, Class<T> clazz) {
+        return get(request, clazz, RequestPriority.FEED);
+    }
+
+    public static <T> Single<T> get(final Request request, final Class<T> clazz, final RequestPriority priority) {
+        return Single.create(new SingleOnSubscribe<T>() {
+            @Override
+            public void subscribe(SingleEmitter<T> emitter) {
+                final DisposeDataListener listener = new EmitterListener<>(emitter);
+                final Call call = CommonOkHttpClient.get(request, new DisposeDataHandle(listener, clazz), priority);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() {
+                        CommonOkHttpClient.cancel(call, listener);
+                    }
+                });
+            }
+        });
+    }
+
+    public static <T> Single<T> post(Request request, Class<T> clazz) {
+        return post(request, clazz, RequestPriority.INTERACTIVE);
+    }
+
+    public static <T> Single<T> post(final Request request, final Class<T> clazz, final RequestPriority priority) {
+        return Single.create(new SingleOnSubscribe<T>() {
+            @Override
+            public void subscribe(SingleEmitter<T> emitter) {
+                final DisposeDataListener listener = new EmitterListener<>(emitter);
+                final Call call = CommonOkHttpClient.post(request, new DisposeDataHandle(listener, clazz), priority);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() {
+                        CommonOkHttpClient.cancel(call, listener);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 逐页请求，直到PageRequest返回null
+     * 每页在订阅线程上同步执行，取消时中断正在进行的请求
+     */
+    public static <T> Flowable<T> pages(final PageRequest<T> pages, final Class<T> clazz) {
+        return Flowable.defer(new Callable<Publisher<T>>() {
+            @Override
+            public Publisher<T> call() {
+                final PageState<T> state = new PageState<>();
+                return Flowable.generate(new Consumer<Emitter<T>>() {
+                    @Override
+                    public void accept(Emitter<T> emitter) throws Exception {
+                        Request request = pages.create(state.page, state.previous);
+                        if (request == null) {
+                            emitter.onComplete();
+                            return;
+                        }
+                        T result;
+                        try {
+                            result = state.execute(request, clazz);
+                        } catch (Exception e) {
+                            if (state.mCanceled) {
+                                //下游已经取消，不再发射错误
+                                return;
+                            }
+                            throw e;
+                        }
+                        state.previous = result;
+                        state.page++;
+                        emitter.onNext(result);
+                    }
+                }).doOnCancel(new Action() {
+                    @Override
+                    public void run() {
+                        state.cancel();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 把DisposeDataListener的回调转给Single
+     */
+    private static class EmitterListener<T> implements DisposeDataListener {
+        private final SingleEmitter<T> mEmitter;
+
+        EmitterListener(SingleEmitter<T> emitter) {
+            mEmitter = emitter;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onSuccess(Object responseObj) {
+            mEmitter.onSuccess((T) responseObj);
+        }
+
+        @Override
+        public void onFailure(Object responseObj) {
+            mEmitter.tryOnError(responseObj instanceof Throwable
+                    ? (Throwable) responseObj : new OkHttpException(NETWORK_ERROR, responseObj));
+        }
+    }
+
+    private static class PageState<T> {
+        private int page;
+        private T previous;
+        private volatile Call mCall;
+        private volatile boolean mCanceled;
+
+        T execute(Request request, Class<T> clazz) throws Exception {
+            Call call = CommonOkHttpClient.getOkHttpClient().newCall(request);
+            mCall = call;
+            //与cancel()并发时保证新请求也被取消
+            if (mCanceled) {
+                call.cancel();
+            }
+            Response response;
+            try {
+                response = call.execute();
+            } catch (IOException e) {
+                throw new OkHttpException(NETWORK_ERROR, e);
+            }
+            if (!response.isSuccessful()) {
+                response.close();
+                throw new OkHttpException(NETWORK_ERROR, response.code());
+            }
+            try {
+                Object result = ModelStreamParser.parse(response.body().charStream(), clazz);
+                if (result == null) {
+                    throw new OkHttpException(JSON_ERROR, EMPTY_MSG);
+                }
+                return clazz.cast(result);
+            } catch (EOFException e) {
+                throw new OkHttpException(NETWORK_ERROR, EMPTY_MSG);
+            } catch (IOException e) {
+                throw new OkHttpException(JSON_ERROR, e);
+            } finally {
+                response.close();
+            }
+        }
+
+        void cancel() {
+            mCanceled = true;
+            Call call = mCall;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+    }
+}
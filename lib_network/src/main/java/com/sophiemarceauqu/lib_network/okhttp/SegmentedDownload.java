@@ -0,0 +1,417 @@
+package com.sophiemarceauqu.lib_network.okhttp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.sophiemarceauqu.lib_network.okhttp.exception.OkHttpException;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDownloadListener;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestPriority;
+import com.sophiemarceauqu.lib_network.okhttp.response.CommonFileCallback;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * 大文件分段并发下载，由CommonOkHttpClient.downloadFileSegmented创建
+ * 1先请求第一个字节，确认服务端支持Range并拿到文件总长度和ETag/Last-Modified
+ * 2预分配 文件路径.seg 后按Range分成N段并发下载，各段直接写入文件中自己的偏移
+ * 3某一段失败只从该段已写入的位置重新请求这一段，超过重试次数才整体失败
+ * 4服务端不支持Range，文件较小，或下载途中文件发生变化(If-Range返回200)时退化为单连接的downloadFile
+ * 5各段按BULK优先级排队，和downloadFile共用大文件下载的并发限制，不会挤占FEED和PREFETCH请求
+ * 注意：HTTP/2下各段复用同一个连接，并发只减少请求排队，不增加TCP连接数
+ */
+public class SegmentedDownload {
+    private static final int NETWORK_ERROR = -1;
+    private static final int IO_ERROR = -2;
+    private static final String EMPTY_MSG = "";
+
+    private static final String TEMP_SUFFIX = ".seg";
+    //每段至少1MB，更小的文件分段收益抵不过额外的请求
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final int MAX_SEGMENT_RETRIES = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+
+    private final OkHttpClient mClient;
+    private final RequestScheduler mScheduler;
+    private final Request mRequest;
+    private final DisposeDataHandle mHandle;
+    private final DisposeDownloadListener mListener;
+    private final int mSegmentCount;
+    private final File mFile;
+    private final File mTemp;
+    private final Handler mDeliveryHandler = new Handler(Looper.getMainLooper());
+
+    private final List<Call> mCalls = new ArrayList<>();
+    private final AtomicBoolean mFinished = new AtomicBoolean();
+    private volatile boolean mCanceled;
+    private String mValidator;
+    private final AtomicInteger mRemaining = new AtomicInteger();
+
+    private long mTotal;
+    private final AtomicLong mDownloaded = new AtomicLong();
+    private final AtomicLong mLastProgressTime = new AtomicLong();
+    private final AtomicInteger mProgress = new AtomicInteger();
+    private final AtomicBoolean mProgressPending = new AtomicBoolean();
+    private final Runnable mProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mProgressPending.set(false);
+            if (!mCanceled) {
+                mListener.onProgress(mProgress.get());
+            }
+        }
+    };
+
+    SegmentedDownload(OkHttpClient client, RequestScheduler scheduler, Request request, DisposeDataHandle handle,
+                      int segmentCount) {
+        mClient = client;
+        mScheduler = scheduler;
+        //探测和各段请求都不经过http缓存
+        mRequest = request.newBuilder().cacheControl(CommonFileCallback.NO_STORE).build();
+        mHandle = handle;
+        mListener = (DisposeDownloadListener) handle.mListener;
+        mSegmentCount = Math.max(1, segmentCount);
+        mFile = new File(handle.mSource);
+        mTemp = new File(handle.mSource + TEMP_SUFFIX);
+    }
+
+    /**
+     * 取消全部分段，取消后不再回调
+     */
+    public void cancel() {
+        mCanceled = true;
+        List<Call> calls;
+        synchronized (mCalls) {
+            calls = new ArrayList<>(mCalls);
+        }
+        for (Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    void start() {
+        Request probe = mRequest.newBuilder()
+                .header("Range", "bytes=0-0")
+                .header("Accept-Encoding", "identity")
+                .build();
+        enqueue(probe, new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (call.isCanceled() || mCanceled) {
+                    return;
+                }
+                fail(NETWORK_ERROR, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                long total;
+                String validator;
+                try {
+                    total = response.code() == 206 ? totalLength(response.header("Content-Range")) : -1;
+                    validator = response.header("ETag");
+                    if (validator == null) {
+                        validator = response.header("Last-Modified");
+                    }
+                } finally {
+                    response.close();
+                }
+                if (mCanceled) {
+                    return;
+                }
+                if (total < MIN_SEGMENT_SIZE * 2 || validator == null || mSegmentCount == 1) {
+                    fallback();
+                    return;
+                }
+                try {
+                    startSegments(total, validator);
+                } catch (IOException e) {
+                    fail(IO_ERROR, e);
+                }
+            }
+        });
+    }
+
+    private void startSegments(long total, String validator) throws IOException {
+        File dir = mFile.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        //预分配，各段按偏移写入，不需要再扩展文件
+        RandomAccessFile file = new RandomAccessFile(mTemp, "rw");
+        try {
+            file.setLength(total);
+        } finally {
+            file.close();
+        }
+        mTotal = total;
+        mValidator = validator;
+        int count = (int) Math.min(mSegmentCount, total / MIN_SEGMENT_SIZE);
+        long size = (total + count - 1) / count;
+        mRemaining.set(count);
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            fetch(new Segment(start, Math.min(total, start + size) - 1));
+        }
+    }
+
+    private void fetch(final Segment segment) {
+        final long from = segment.start + segment.written;
+        Request request = mRequest.newBuilder()
+                .header("Range", "bytes=" + from + "-" + segment.end)
+                .header("If-Range", mValidator)
+                .header("Accept-Encoding", "identity")
+                .build();
+        enqueue(request, new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                segmentFailed(segment, call, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try {
+                    if (response.code() == 200) {
+                        //If-Range不匹配，服务端文件已经变化，整个重新下载
+                        if (mFinished.compareAndSet(false, true)) {
+                            cancelCalls();
+                            mTemp.delete();
+                            fallback();
+                        }
+                        return;
+                    }
+                    if (response.code() != 206) {
+                        throw new IOException("unexpected code " + response.code());
+                    }
+                    //服务端返回的范围与请求不一致时不能按偏移写入，按失败重试这一段
+                    String contentRange = response.header("Content-Range");
+                    if (!isRange(contentRange, from, segment.end, mTotal)) {
+                        throw new IOException("unexpected Content-Range " + contentRange
+                                + ", requested " + from + "-" + segment.end);
+                    }
+                    write(segment, response.body());
+                } catch (IOException e) {
+                    segmentFailed(segment, call, e);
+                    return;
+                } finally {
+                    response.close();
+                }
+                if (mRemaining.decrementAndGet() == 0) {
+                    complete();
+                }
+            }
+        });
+    }
+
+    private void write(Segment segment, ResponseBody body) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mTemp, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            BufferedSource source = body.source();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (segment.written < segment.length()
+                    && (read = source.read(buffer, 0, (int) Math.min(BUFFER_SIZE, segment.length() - segment.written))) != -1) {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                long position = segment.start + segment.written;
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+                segment.written += read;
+                onBytes(read);
+                if (mCanceled || mFinished.get()) {
+                    throw new IOException("Canceled");
+                }
+            }
+        } finally {
+            file.close();
+        }
+        if (segment.written < segment.length()) {
+            throw new IOException("segment truncated at " + (segment.start + segment.written));
+        }
+    }
+
+    private void segmentFailed(Segment segment, Call call, IOException e) {
+        if (mFinished.get() || mCanceled) {
+            return;
+        }
+        if (call.isCanceled()) {
+            //按tag取消了其中一段，视为整个下载被取消
+            cancel();
+            return;
+        }
+        if (++segment.retries > MAX_SEGMENT_RETRIES) {
+            fail(NETWORK_ERROR, e);
+            return;
+        }
+        fetch(segment);
+    }
+
+    private void complete() {
+        if (!mFinished.compareAndSet(false, true) || mCanceled) {
+            return;
+        }
+        mFile.delete();
+        if (!mTemp.renameTo(mFile)) {
+            mTemp.delete();
+            deliverFailure(new OkHttpException(IO_ERROR, EMPTY_MSG));
+            return;
+        }
+        postProgress(100);
+        mDeliveryHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mCanceled) {
+                    mListener.onSuccess(mFile);
+                }
+            }
+        });
+    }
+
+    private void fail(int code, Object msg) {
+        if (!mFinished.compareAndSet(false, true)) {
+            return;
+        }
+        cancelCalls();
+        mTemp.delete();
+        deliverFailure(new OkHttpException(code, msg));
+    }
+
+    private void fallback() {
+        Call call = CommonOkHttpClient.downloadFile(mRequest, mHandle);
+        track(call);
+    }
+
+    private void enqueue(Request request, Callback callback) {
+        Call call = mClient.newCall(request);
+        track(call);
+        mScheduler.enqueue(call, callback, RequestPriority.BULK);
+    }
+
+    private void track(Call call) {
+        synchronized (mCalls) {
+            mCalls.add(call);
+        }
+        //与cancel()并发时保证新请求也被取消
+        if (mCanceled) {
+            call.cancel();
+        }
+    }
+
+    private void cancelCalls() {
+        synchronized (mCalls) {
+            for (Call call : mCalls) {
+                call.cancel();
+            }
+        }
+    }
+
+    private void deliverFailure(final OkHttpException exception) {
+        mDeliveryHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mCanceled) {
+                    mListener.onFailure(exception);
+                }
+            }
+        });
+    }
+
+    //各段线程共同累计，按固定间隔合并成一个主线程消息
+    private void onBytes(int count) {
+        long downloaded = mDownloaded.addAndGet(count);
+        long now = SystemClock.uptimeMillis();
+        long last = mLastProgressTime.get();
+        if (now - last >= PROGRESS_INTERVAL_MILLIS && mLastProgressTime.compareAndSet(last, now)) {
+            postProgress((int) (downloaded * 100 / mTotal));
+        }
+    }
+
+    private void postProgress(int progress) {
+        mProgress.set(progress);
+        if (mProgressPending.compareAndSet(false, true)) {
+            mDeliveryHandler.post(mProgressRunnable);
+        }
+    }
+
+    //Content-Range: bytes 0-0/1024
+    private static long totalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            //总长度未知(*)
+            return -1;
+        }
+    }
+
+    //Content-Range: bytes start-end/total，总长度为*时不校验总长度
+    private static boolean isRange(String contentRange, long start, long end, long total) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return false;
+        }
+        int dash = contentRange.indexOf('-');
+        int slash = contentRange.lastIndexOf('/');
+        if (dash < 0 || slash < dash) {
+            return false;
+        }
+        try {
+            if (Long.parseLong(contentRange.substring(6, dash).trim()) != start
+                    || Long.parseLong(contentRange.substring(dash + 1, slash).trim()) != end) {
+                return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        long length = totalLength(contentRange);
+        return length < 0 || length == total;
+    }
+
+    /**
+     * 文件中的一段[start, end]，written为已写入的字节数，重试时从start + written继续
+     */
+    private static class Segment {
+        private final long start;
+        private final long end;
+        private volatile long written;
+        private int retries;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.sophiemarceauqu.lib_network.okhttp.batch;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+/**
+ * 批量请求的编解码，JsonWriter/JsonReader流式读写，不构建中间的json树
+ * 请求：{"requests":[{"id":0,"method":"GET","url":"http://...","headers":{"名":"值"}}]}
+ * 响应：{"responses":[{"id":0,"status":200,"body":{...}}]}
+ * 响应中的id需要写在body之前，没有id时按数组下标对应
+ */
+public class BatchCodec {
+    public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 一个子请求的结果，model为null表示没有结果或解析失败
+     */
+    public static class Result {
+        public int status = -1;
+        public Object model;
+    }
+
+    public static RequestBody encodeRequests(List<Request> requests) throws IOException {
+        Buffer buffer = new Buffer();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(buffer.outputStream(), UTF_8));
+        writer.beginObject().name("requests").beginArray();
+        for (int i = 0; i < requests.size(); i++) {
+            Request request = requests.get(i);
+            writer.beginObject()
+                    .name("id").value(i)
+                    .name("method").value(request.method())
+                    .name("url").value(request.url().toString());
+            Headers headers = request.headers();
+            writer.name("headers").beginObject();
+            for (int h = 0; h < headers.size(); h++) {
+                writer.name(headers.name(h)).value(headers.value(h));
+            }
+            writer.endObject().endObject();
+        }
+        writer.endArray().endObject();
+        writer.close();
+        return RequestBody.create(JSON, buffer.readByteString());
+    }
+
+    /**
+     * 服务端(或本地替身)解析批量请求
+     */
+    public static List<Request> decodeRequests(Reader body) throws IOException {
+        List<Request> requests = new ArrayList<>();
+        JsonReader reader = new JsonReader(body);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"requests".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                requests.add(readRequest(reader));
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return requests;
+    }
+
+    private static Request readRequest(JsonReader reader) throws IOException {
+        Request.Builder builder = new Request.Builder();
+        String method = "GET";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("method".equals(name)) {
+                method = reader.nextString();
+            } else if ("url".equals(name)) {
+                builder.url(reader.nextString());
+            } else if ("headers".equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    builder.addHeader(reader.nextName(), reader.nextString());
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return builder.method(method, null).build();
+    }
+
+    /**
+     * 服务端(或本地替身)写一个子响应，body是json时原样嵌入，否则按字符串写入
+     */
+    public static void writeResponse(JsonWriter writer, int id, int status, String body) throws IOException {
+        writer.beginObject().name("id").value(id).name("status").value(status).name("body");
+        String trimmed = body == null ? "" : body.trim();
+        if (trimmed.startsWith("{") || trimmed.startsWith("[")) {
+            writer.jsonValue(trimmed);
+        } else {
+            writer.value(body);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * 解析批量响应，各子响应的body直接映射为classes中对应的实体
+     *
+     * @return 与classes一一对应
+     */
+    public static List<Result> decodeResponses(Reader body, List<Class<?>> classes) throws IOException {
+        List<Result> results = new ArrayList<>(classes.size());
+        for (int i = 0; i < classes.size(); i++) {
+            results.add(new Result());
+        }
+        JsonReader reader = new JsonReader(body);
+        reader.setLenient(true);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"responses".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            for (int index = 0; reader.hasNext(); index++) {
+                readResponse(reader, index, classes, results);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return results;
+    }
+
+    private static void readResponse(JsonReader reader, int index, List<Class<?>> classes, List<Result> results)
+            throws IOException {
+        int id = index;
+        int status = -1;
+        Object model = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("id".equals(name)) {
+                id = reader.nextInt();
+            } else if ("status".equals(name)) {
+                status = reader.nextInt();
+            } else if ("body".equals(name) && id >= 0 && id < classes.size()
+                    && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                model = ModelStreamParser.readModel(reader, classes.get(id));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (id >= 0 && id < results.size()) {
+            Result result = results.get(id);
+            result.status = status;
+            result.model = model;
+        }
+    }
+}
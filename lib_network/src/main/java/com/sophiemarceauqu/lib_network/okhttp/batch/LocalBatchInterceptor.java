@@ -0,0 +1,69 @@
+package com.sophiemarceauqu.lib_network.okhttp.batch;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * 批量接口的本地替身，作为应用拦截器添加(OkHttpConfig.Builder.addInterceptor)
+ * 拦截发往批量地址的请求，在本地逐个发出子请求再按批量响应的格式返回，
+ * 用于测试和服务端还没有批量接口时联调，不减少真实的网络往返
+ */
+public class LocalBatchInterceptor implements Interceptor {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final HttpUrl mBatchUrl;
+
+    public LocalBatchInterceptor(String batchUrl) {
+        mBatchUrl = HttpUrl.parse(batchUrl);
+        if (mBatchUrl == null) {
+            throw new IllegalArgumentException("unexpected url: " + batchUrl);
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!mBatchUrl.equals(request.url()) || request.body() == null) {
+            return chain.proceed(request);
+        }
+        Buffer requestBody = new Buffer();
+        request.body().writeTo(requestBody);
+        List<Request> requests = BatchCodec.decodeRequests(
+                new InputStreamReader(requestBody.inputStream(), UTF_8));
+
+        Buffer responseBody = new Buffer();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(responseBody.outputStream(), UTF_8));
+        writer.beginObject().name("responses").beginArray();
+        for (int i = 0; i < requests.size(); i++) {
+            //应用拦截器可以多次调用proceed，子请求照常经过后面的拦截器和缓存
+            Response response = chain.proceed(requests.get(i));
+            try {
+                BatchCodec.writeResponse(writer, i, response.code(), response.body().string());
+            } finally {
+                response.close();
+            }
+        }
+        writer.endArray().endObject();
+        writer.close();
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(BatchCodec.JSON, responseBody.size(), responseBody))
+                .build();
+    }
+}
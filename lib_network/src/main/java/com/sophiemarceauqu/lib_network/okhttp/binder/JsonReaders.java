@@ -0,0 +1,129 @@
+package com.sophiemarceauqu.lib_network.okhttp.binder;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * 生成的绑定类与ModelStreamParser共用的读取方法，映射规则与ResponseEntityToModule一致：
+ * 类型不匹配的值被跳过，字段保持原值
+ */
+public class JsonReaders {
+    private static final JsonParser sJsonParser = new JsonParser();
+
+    /**
+     * 读取基本类型的值，数字，字符串，布尔都按字符串返回，由调用方转换
+     *
+     * @return 不是基本类型的值时跳过并返回null
+     */
+    public static String nextPrimitive(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    /**
+     * 对象或数组按原样转回json文本
+     */
+    public static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        return sJsonParser.parse(reader).toString();
+    }
+
+    public static <T> T nextModel(JsonReader reader, ModelBinder<T> binder, T current) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return current;
+        }
+        return binder.read(reader);
+    }
+
+    public static <T> T nextModel(JsonReader reader, Class<T> clazz, T current) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return current;
+        }
+        return clazz.cast(ModelStreamParser.readModel(reader, clazz));
+    }
+
+    public static <T> ArrayList<T> nextList(JsonReader reader, ModelBinder<T> binder, ArrayList<T> current)
+            throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return current;
+        }
+        ArrayList<T> objList = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                objList.add(binder.read(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return objList;
+    }
+
+    public static <T> ArrayList<T> nextList(JsonReader reader, Class<T> elementType, ArrayList<T> current)
+            throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return current;
+        }
+        ArrayList<T> objList = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_OBJECT) {
+                objList.add(elementType.cast(ModelStreamParser.readModel(reader, elementType)));
+            } else {
+                Object value = nextScalar(reader, token);
+                if (value != null && elementType.isAssignableFrom(value.getClass())) {
+                    objList.add(elementType.cast(value));
+                }
+            }
+        }
+        reader.endArray();
+        return objList;
+    }
+
+    //与org.json取值的类型一致：String，Boolean，Integer/Long/Double
+    private static Object nextScalar(JsonReader reader, JsonToken token) throws IOException {
+        if (token == JsonToken.STRING) {
+            return reader.nextString();
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        if (token == JsonToken.NUMBER) {
+            String number = reader.nextString();
+            if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+                return Double.valueOf(number);
+            }
+            long value = Long.parseLong(number);
+            if (value == (int) value) {
+                return (int) value;
+            }
+            return value;
+        }
+        reader.skipValue();
+        return null;
+    }
+}
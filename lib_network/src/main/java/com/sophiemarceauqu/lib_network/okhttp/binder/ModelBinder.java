@@ -0,0 +1,15 @@
+package com.sophiemarceauqu.lib_network.okhttp.binder;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * @function 编译期为@JsonModel实体生成的绑定类实现此接口，类名为 实体类名_JsonBinder
+ */
+public interface ModelBinder<T> {
+    /**
+     * 调用前reader必须位于BEGIN_OBJECT
+     */
+    T read(JsonReader reader) throws IOException;
+}
@@ -0,0 +1,38 @@
+package com.sophiemarceauqu.lib_network.okhttp.binder;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 查找实体类对应的生成绑定类，每个类只查找一次，没有绑定类的也缓存结果
+ */
+public class ModelBinders {
+    public static final String SUFFIX = "_JsonBinder";
+
+    //没有绑定类的占位，只用于缓存
+    private static final Object NONE = new Object();
+    private static final ConcurrentHashMap<Class<?>, Object> sBinders = new ConcurrentHashMap<>();
+
+    /**
+     * @return 没有生成绑定类(未加@JsonModel)时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ModelBinder<T> get(Class<T> clazz) {
+        Object binder = sBinders.get(clazz);
+        if (binder == null) {
+            binder = load(clazz);
+            sBinders.put(clazz, binder);
+        }
+        return binder == NONE ? null : (ModelBinder<T>) binder;
+    }
+
+    private static Object load(Class<?> clazz) {
+        try {
+            Class<?> binderClass = Class.forName(clazz.getName() + SUFFIX, true, clazz.getClassLoader());
+            return (ModelBinder<?>) binderClass.getField("INSTANCE").get(null);
+        } catch (ClassNotFoundException e) {
+            return NONE;
+        } catch (Exception e) {
+            throw new IllegalStateException("加载绑定类失败: " + clazz.getName(), e);
+        }
+    }
+}
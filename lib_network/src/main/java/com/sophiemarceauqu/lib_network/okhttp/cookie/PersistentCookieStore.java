@@ -3,23 +3,30 @@ package com.sophiemarceauqu.lib_network.okhttp.cookie;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.text.TextUtils;
+import android.util.Base64;
 import android.util.Log;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.CookieStore;
 import java.net.HttpCookie;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <pre>
@@ -31,26 +38,48 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * </pre>
  * <p/>
- * from
- * http://stackoverflow.com/questions/25461792/persistent-cookie-store-using-
- * okhttp-2-on-android
- * <p/>
- * <br/>
- * A persistent cookie store which implements the Apache HttpClient CookieStore
- * interface. Cookies are stored and will persist on the user's device between
- * application sessions since they are serialized and stored in
- * SharedPreferences. Instances of this class are designed to be used with
- * AsyncHttpClient#setCookieStore, but can also be used with a regular old
- * apache HttpClient/HttpContext if you prefer.
+ * 持久化的CookieStore，线程安全
+ * 1内存中按domain建索引，查询时只看请求host及其上级域名，再按path和secure过滤
+ * 2每个cookie用DataOutputStream紧凑序列化后Base64保存，不再使用ObjectOutputStream + hex
+ * 3修改先记在内存里，500ms内的多次修改合并成一次SharedPreferences.apply()，在后台线程写入
+ * 4过期的cookie在查询时顺带删除，不单独扫描
+ * 5第一次使用时才读取SharedPreferences，构造方法不做IO；旧版本保存的cookie在加载时迁移到新格式
  */
 public class PersistentCookieStore implements CookieStore {
 
 	private static final String LOG_TAG = "PersistentCookieStore";
 	private static final String COOKIE_PREFS = "CookiePrefsFile";
-	private static final String COOKIE_NAME_PREFIX = "cookie_";
+	//旧版本：host -> 逗号分隔的cookie名，cookie_名 -> ObjectOutputStream的hex
+	private static final String LEGACY_NAME_PREFIX = "cookie_";
+	private static final String COOKIE_PREFIX = "c2_";
+	private static final int FORMAT_VERSION = 1;
+	private static final long FLUSH_DELAY_MILLIS = 500;
+	//会话cookie(没有Max-Age)的过期时间
+	private static final long NEVER = Long.MAX_VALUE;
+
+	private final Context context;
+	private SharedPreferences cookiePrefs;
+	private volatile boolean loaded;
 
-	private final HashMap<String, ConcurrentHashMap<String, HttpCookie>> cookies;
-	private final SharedPreferences cookiePrefs;
+	//domain(小写，不含开头的点) -> (name|domain|path -> cookie)
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, Entry>> cookies = new ConcurrentHashMap<>();
+	//待写入的pref key，value为null表示删除
+	private final HashMap<String, Entry> pending = new HashMap<>();
+	private boolean flushScheduled;
+	private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, LOG_TAG);
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
 
 	/**
 	 * Construct a persistent cookie store.
@@ -59,103 +88,119 @@ public class PersistentCookieStore implements CookieStore {
 	 *            Context to attach cookie store to
 	 */
 	public PersistentCookieStore(Context context) {
-		cookiePrefs = context.getSharedPreferences(COOKIE_PREFS, 0);
-		cookies = new HashMap<String, ConcurrentHashMap<String, HttpCookie>>();
-
-		// Load any previously stored cookies into the store
-		Map<String, ?> prefsMap = cookiePrefs.getAll();
-		for (Map.Entry<String, ?> entry : prefsMap.entrySet()) {
-			if (((String) entry.getValue()) != null && !((String) entry.getValue()).startsWith(COOKIE_NAME_PREFIX)) {
-				String[] cookieNames = TextUtils.split((String) entry.getValue(), ",");
-				for (String name : cookieNames) {
-					String encodedCookie = cookiePrefs.getString(COOKIE_NAME_PREFIX + name, null);
-					if (encodedCookie != null) {
-						HttpCookie decodedCookie = decodeCookie(encodedCookie);
-						if (decodedCookie != null) {
-							if (!cookies.containsKey(entry.getKey()))
-								cookies.put(entry.getKey(), new ConcurrentHashMap<String, HttpCookie>());
-							cookies.get(entry.getKey()).put(name, decodedCookie);
-						}
-					}
-				}
-
-			}
-		}
+		Context application = context.getApplicationContext();
+		this.context = application == null ? context : application;
 	}
 
 	@Override
 	public void add(URI uri, HttpCookie cookie) {
-		String name = getCookieToken(uri, cookie);
-
-		// Save cookie into local store, or remove if expired
-		if (!cookie.hasExpired()) {
-			if (!cookies.containsKey(uri.getHost()))
-				cookies.put(uri.getHost(), new ConcurrentHashMap<String, HttpCookie>());
-			cookies.get(uri.getHost()).put(name, cookie);
-		} else {
-			if (cookies.containsKey(uri.toString()))
-				cookies.get(uri.getHost()).remove(name);
+		ensureLoaded();
+		String domain = domainOf(uri, cookie);
+		String key = keyOf(domain, cookie);
+		if (cookie.hasExpired()) {
+			removeEntry(domain, key);
+			return;
 		}
-
-		// Save cookie into persistent store
-		SharedPreferences.Editor prefsWriter = cookiePrefs.edit();
-		prefsWriter.putString(uri.getHost(), TextUtils.join(",", cookies.get(uri.getHost()).keySet()));
-		prefsWriter.putString(COOKIE_NAME_PREFIX + name, encodeCookie(new SerializableHttpCookie(cookie)));
-		prefsWriter.commit();
+		Entry entry = new Entry(cookie, domain, cookie.getDomain() == null, expiresAt(cookie));
+		ConcurrentHashMap<String, Entry> bucket = cookies.get(domain);
+		if (bucket == null) {
+			ConcurrentHashMap<String, Entry> created = new ConcurrentHashMap<>();
+			bucket = cookies.putIfAbsent(domain, created);
+			if (bucket == null) {
+				bucket = created;
+			}
+		}
+		bucket.put(key, entry);
+		schedule(COOKIE_PREFIX + key, entry);
 	}
 
 	protected String getCookieToken(URI uri, HttpCookie cookie) {
-		return cookie.getName() + cookie.getDomain();
+		return keyOf(domainOf(uri, cookie), cookie);
 	}
 
 	@Override
 	public List<HttpCookie> get(URI uri) {
+		ensureLoaded();
 		ArrayList<HttpCookie> ret = new ArrayList<HttpCookie>();
-		if (cookies.containsKey(uri.getHost()))
-			ret.addAll(cookies.get(uri.getHost()).values());
+		String host = uri.getHost();
+		if (host == null) {
+			return ret;
+		}
+		host = host.toLowerCase(Locale.US);
+		String path = TextUtils.isEmpty(uri.getPath()) ? "/" : uri.getPath();
+		boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+		long now = System.currentTimeMillis();
+		//只查host本身和上级域名，a.b.com -> b.com -> com
+		for (String domain = host; domain != null; domain = parentDomain(domain)) {
+			ConcurrentHashMap<String, Entry> bucket = cookies.get(domain);
+			if (bucket == null) {
+				continue;
+			}
+			for (Iterator<Map.Entry<String, Entry>> it = bucket.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<String, Entry> item = it.next();
+				Entry entry = item.getValue();
+				if (entry.isExpired(now)) {
+					it.remove();
+					schedule(COOKIE_PREFIX + item.getKey(), null);
+					continue;
+				}
+				//host-only cookie只发给设置它的host
+				if (entry.hostOnly && !domain.equals(host)) {
+					continue;
+				}
+				if (entry.cookie.getSecure() && !secure) {
+					continue;
+				}
+				if (pathMatches(entry.cookie.getPath(), path)) {
+					ret.add(entry.cookie);
+				}
+			}
+		}
 		return ret;
 	}
 
 	@Override
 	public boolean removeAll() {
-		SharedPreferences.Editor prefsWriter = cookiePrefs.edit();
-		prefsWriter.clear();
-		prefsWriter.commit();
+		ensureLoaded();
 		cookies.clear();
+		synchronized (pending) {
+			pending.clear();
+		}
+		//与已经排队的写入按顺序执行
+		flusher.execute(new Runnable() {
+			@Override
+			public void run() {
+				cookiePrefs.edit().clear().apply();
+			}
+		});
 		return true;
 	}
 
 	@Override
 	public boolean remove(URI uri, HttpCookie cookie) {
-		String name = getCookieToken(uri, cookie);
-
-		if (cookies.containsKey(uri.getHost()) && cookies.get(uri.getHost()).containsKey(name)) {
-			cookies.get(uri.getHost()).remove(name);
-
-			SharedPreferences.Editor prefsWriter = cookiePrefs.edit();
-			if (cookiePrefs.contains(COOKIE_NAME_PREFIX + name)) {
-				prefsWriter.remove(COOKIE_NAME_PREFIX + name);
-			}
-			prefsWriter.putString(uri.getHost(), TextUtils.join(",", cookies.get(uri.getHost()).keySet()));
-			prefsWriter.commit();
-
-			return true;
-		} else {
-			return false;
-		}
+		ensureLoaded();
+		String domain = domainOf(uri, cookie);
+		return removeEntry(domain, keyOf(domain, cookie));
 	}
 
 	@Override
 	public List<HttpCookie> getCookies() {
+		ensureLoaded();
 		ArrayList<HttpCookie> ret = new ArrayList<HttpCookie>();
-		for (String key : cookies.keySet())
-			ret.addAll(cookies.get(key).values());
-
+		long now = System.currentTimeMillis();
+		for (ConcurrentHashMap<String, Entry> bucket : cookies.values()) {
+			for (Entry entry : bucket.values()) {
+				if (!entry.isExpired(now)) {
+					ret.add(entry.cookie);
+				}
+			}
+		}
 		return ret;
 	}
 
 	@Override
 	public List<URI> getURIs() {
+		ensureLoaded();
 		ArrayList<URI> ret = new ArrayList<URI>();
 		for (String key : cookies.keySet())
 			try {
@@ -167,86 +212,250 @@ public class PersistentCookieStore implements CookieStore {
 		return ret;
 	}
 
+	private boolean removeEntry(String domain, String key) {
+		ConcurrentHashMap<String, Entry> bucket = cookies.get(domain);
+		if (bucket == null || bucket.remove(key) == null) {
+			return false;
+		}
+		schedule(COOKIE_PREFIX + key, null);
+		return true;
+	}
+
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		synchronized (this) {
+			if (loaded) {
+				return;
+			}
+			cookiePrefs = context.getSharedPreferences(COOKIE_PREFS, 0);
+			load(cookiePrefs.getAll());
+			loaded = true;
+		}
+	}
+
+	private void load(Map<String, ?> prefsMap) {
+		long now = System.currentTimeMillis();
+		//旧版本的cookie名 -> host
+		HashMap<String, String> legacyHosts = new HashMap<>();
+		for (Map.Entry<String, ?> item : prefsMap.entrySet()) {
+			if (!(item.getValue() instanceof String) || item.getKey().startsWith(COOKIE_PREFIX)
+					|| item.getKey().startsWith(LEGACY_NAME_PREFIX)) {
+				continue;
+			}
+			for (String name : TextUtils.split((String) item.getValue(), ",")) {
+				legacyHosts.put(name, item.getKey());
+			}
+			schedule(item.getKey(), null);
+		}
+		for (Map.Entry<String, ?> item : prefsMap.entrySet()) {
+			if (!(item.getValue() instanceof String)) {
+				continue;
+			}
+			String prefKey = item.getKey();
+			String value = (String) item.getValue();
+			if (prefKey.startsWith(COOKIE_PREFIX)) {
+				Entry entry = decode(value);
+				if (entry == null || entry.isExpired(now)) {
+					schedule(prefKey, null);
+				} else {
+					put(prefKey.substring(COOKIE_PREFIX.length()), entry);
+				}
+			} else if (prefKey.startsWith(LEGACY_NAME_PREFIX)) {
+				schedule(prefKey, null);
+				String host = legacyHosts.get(prefKey.substring(LEGACY_NAME_PREFIX.length()));
+				HttpCookie cookie = decodeLegacyCookie(value);
+				if (host == null || cookie == null || cookie.hasExpired()) {
+					continue;
+				}
+				String domain = cookie.getDomain() == null ? host.toLowerCase(Locale.US) : normalize(cookie.getDomain());
+				Entry entry = new Entry(cookie, domain, cookie.getDomain() == null, expiresAt(cookie));
+				String key = keyOf(domain, cookie);
+				put(key, entry);
+				schedule(COOKIE_PREFIX + key, entry);
+			}
+		}
+	}
+
+	private void put(String key, Entry entry) {
+		ConcurrentHashMap<String, Entry> bucket = cookies.get(entry.domain);
+		if (bucket == null) {
+			bucket = new ConcurrentHashMap<>();
+			cookies.put(entry.domain, bucket);
+		}
+		bucket.put(key, entry);
+	}
+
+	//合并一段时间内的修改，一次apply写入
+	private void schedule(String prefKey, Entry entry) {
+		synchronized (pending) {
+			pending.put(prefKey, entry);
+			if (!flushScheduled) {
+				flushScheduled = true;
+				flusher.schedule(flushTask, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	private void flush() {
+		HashMap<String, Entry> changes;
+		synchronized (pending) {
+			changes = new HashMap<>(pending);
+			pending.clear();
+			flushScheduled = false;
+		}
+		if (changes.isEmpty()) {
+			return;
+		}
+		SharedPreferences.Editor prefsWriter = cookiePrefs.edit();
+		for (Map.Entry<String, Entry> change : changes.entrySet()) {
+			String encoded = change.getValue() == null ? null : encode(change.getValue());
+			if (encoded == null) {
+				prefsWriter.remove(change.getKey());
+			} else {
+				prefsWriter.putString(change.getKey(), encoded);
+			}
+		}
+		prefsWriter.apply();
+	}
+
+	private static String domainOf(URI uri, HttpCookie cookie) {
+		if (cookie.getDomain() != null) {
+			return normalize(cookie.getDomain());
+		}
+		return uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.US);
+	}
+
+	private static String normalize(String domain) {
+		domain = domain.toLowerCase(Locale.US);
+		return domain.startsWith(".") ? domain.substring(1) : domain;
+	}
+
+	private static String keyOf(String domain, HttpCookie cookie) {
+		return cookie.getName() + '|' + domain + '|' + (cookie.getPath() == null ? "" : cookie.getPath());
+	}
+
+	private static String parentDomain(String domain) {
+		int dot = domain.indexOf('.');
+		return dot < 0 ? null : domain.substring(dot + 1);
+	}
+
+	private static boolean pathMatches(String cookiePath, String requestPath) {
+		if (TextUtils.isEmpty(cookiePath) || cookiePath.equals(requestPath)) {
+			return true;
+		}
+		return requestPath.startsWith(cookiePath)
+				&& (cookiePath.endsWith("/") || requestPath.charAt(cookiePath.length()) == '/');
+	}
+
+	//HttpCookie只有相对创建时间的maxAge，保存时换算成绝对时间
+	private static long expiresAt(HttpCookie cookie) {
+		long maxAge = cookie.getMaxAge();
+		if (maxAge < 0) {
+			return NEVER;
+		}
+		return System.currentTimeMillis() + Math.min(maxAge, (NEVER - System.currentTimeMillis()) / 1000) * 1000;
+	}
+
 	/**
 	 * Serializes Cookie object into String
 	 *
-	 * @param cookie
-	 *            cookie to be encoded, can be null
-	 * @return cookie encoded as String
+	 * @param entry
+	 *            cookie to be encoded
+	 * @return cookie encoded as Base64 String, or null on failure
 	 */
-	protected String encodeCookie(SerializableHttpCookie cookie) {
-		if (cookie == null)
-			return null;
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
+	protected String encode(Entry entry) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(128);
+		DataOutputStream out = new DataOutputStream(os);
+		HttpCookie cookie = entry.cookie;
 		try {
-			ObjectOutputStream outputStream = new ObjectOutputStream(os);
-			outputStream.writeObject(cookie);
+			out.writeByte(FORMAT_VERSION);
+			out.writeUTF(cookie.getName());
+			out.writeUTF(cookie.getValue() == null ? "" : cookie.getValue());
+			out.writeUTF(entry.domain);
+			out.writeBoolean(entry.hostOnly);
+			out.writeUTF(cookie.getPath() == null ? "" : cookie.getPath());
+			out.writeLong(entry.expiresAt);
+			out.writeBoolean(cookie.getSecure());
+			out.writeInt(cookie.getVersion());
 		} catch (IOException e) {
-			Log.d(LOG_TAG, "IOException in encodeCookie", e);
+			Log.d(LOG_TAG, "IOException in encode", e);
 			return null;
 		}
-
-		return byteArrayToHexString(os.toByteArray());
+		return Base64.encodeToString(os.toByteArray(), Base64.NO_WRAP);
 	}
 
 	/**
-	 * Returns cookie decoded from cookie string
+	 * Returns cookie decoded from Base64 string
 	 *
-	 * @param cookieString
-	 *            string of cookie as returned from http request
 	 * @return decoded cookie or null if exception occured
 	 */
-	protected HttpCookie decodeCookie(String cookieString) {
-		byte[] bytes = hexStringToByteArray(cookieString);
-		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-		HttpCookie cookie = null;
+	protected Entry decode(String cookieString) {
 		try {
-			ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream);
-			cookie = ((SerializableHttpCookie) objectInputStream.readObject()).getCookie();
-		} catch (IOException e) {
-			Log.d(LOG_TAG, "IOException in decodeCookie", e);
-		} catch (ClassNotFoundException e) {
-			Log.d(LOG_TAG, "ClassNotFoundException in decodeCookie", e);
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+					Base64.decode(cookieString, Base64.NO_WRAP)));
+			if (in.readByte() != FORMAT_VERSION) {
+				return null;
+			}
+			HttpCookie cookie = new HttpCookie(in.readUTF(), in.readUTF());
+			String domain = in.readUTF();
+			boolean hostOnly = in.readBoolean();
+			String path = in.readUTF();
+			long expiresAt = in.readLong();
+			if (!hostOnly) {
+				cookie.setDomain(domain);
+			}
+			cookie.setPath(path.isEmpty() ? null : path);
+			cookie.setSecure(in.readBoolean());
+			cookie.setVersion(in.readInt());
+			cookie.setMaxAge(expiresAt == NEVER ? -1
+					: Math.max(0, (expiresAt - System.currentTimeMillis()) / 1000));
+			return new Entry(cookie, domain, hostOnly, expiresAt);
+		} catch (IOException | IllegalArgumentException e) {
+			Log.d(LOG_TAG, "Exception in decode", e);
+			return null;
 		}
-
-		return cookie;
 	}
 
 	/**
-	 * Using some super basic byte array &lt;-&gt; hex conversions so we don't
-	 * have to rely on any large Base64 libraries. Can be overridden if you
-	 * like!
-	 *
-	 * @param bytes
-	 *            byte array to be converted
-	 * @return string containing hex values
+	 * 旧版本ObjectOutputStream + hex格式，仅用于迁移
 	 */
-	protected String byteArrayToHexString(byte[] bytes) {
-		StringBuilder sb = new StringBuilder(bytes.length * 2);
-		for (byte element : bytes) {
-			int v = element & 0xff;
-			if (v < 16) {
-				sb.append('0');
-			}
-			sb.append(Integer.toHexString(v));
+	private static HttpCookie decodeLegacyCookie(String cookieString) {
+		int len = cookieString.length();
+		byte[] bytes = new byte[len / 2];
+		for (int i = 0; i + 1 < len; i += 2) {
+			bytes[i / 2] = (byte) ((Character.digit(cookieString.charAt(i), 16) << 4)
+					+ Character.digit(cookieString.charAt(i + 1), 16));
+		}
+		try {
+			ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			return ((SerializableHttpCookie) objectInputStream.readObject()).getCookie();
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			Log.d(LOG_TAG, "Exception in decodeLegacyCookie", e);
+			return null;
 		}
-		return sb.toString().toUpperCase(Locale.US);
 	}
 
 	/**
-	 * Converts hex values from strings to byte arra
-	 *
-	 * @param hexString
-	 *            string of hex-encoded values
-	 * @return decoded byte array
+	 * 一个cookie及其所在的domain和绝对过期时间
 	 */
-	protected byte[] hexStringToByteArray(String hexString) {
-		int len = hexString.length();
-		byte[] data = new byte[len / 2];
-		for (int i = 0; i < len; i += 2) {
-			data[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
-					+ Character.digit(hexString.charAt(i + 1), 16));
+	protected static class Entry {
+		final HttpCookie cookie;
+		final String domain;
+		//没有Domain属性的cookie只发给设置它的host
+		final boolean hostOnly;
+		final long expiresAt;
+
+		Entry(HttpCookie cookie, String domain, boolean hostOnly, long expiresAt) {
+			this.cookie = cookie;
+			this.domain = domain;
+			this.hostOnly = hostOnly;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired(long now) {
+			return now >= expiresAt;
 		}
-		return data;
 	}
-}
\ No newline at end of file
+}
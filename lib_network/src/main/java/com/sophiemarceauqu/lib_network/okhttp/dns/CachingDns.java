@@ -0,0 +1,107 @@
+package com.sophiemarceauqu.lib_network.okhttp.dns;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dns;
+
+/**
+ * 带有效期的本地DNS缓存
+ * 1有效期内直接返回缓存结果，省掉一次系统DNS查询
+ * 2结果按IPv6/IPv4交替排列(RFC 8305的地址排序部分)，某一协议族不通时，下一个尝试的地址就是另一协议族；
+ * 这里只调整顺序，不并发竞速连接，前一个地址要等满connectTimeout才会换下一个
+ * 3查询失败时在宽限期内返回过期的结果，避免DNS抖动导致请求全部失败
+ */
+public class CachingDns implements Dns {
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long STALE_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final Dns mDelegate;
+    private final long mTtlMillis;
+    private final ConcurrentHashMap<String, Entry> mCache = new ConcurrentHashMap<>();
+
+    public CachingDns(long ttlMillis) {
+        this(Dns.SYSTEM, ttlMillis);
+    }
+
+    public CachingDns(Dns delegate, long ttlMillis) {
+        mDelegate = delegate;
+        mTtlMillis = ttlMillis;
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        Entry entry = mCache.get(hostname);
+        if (entry != null && now < entry.expiresAt) {
+            return entry.addresses;
+        }
+        List<InetAddress> addresses;
+        try {
+            addresses = mDelegate.lookup(hostname);
+        } catch (UnknownHostException e) {
+            if (entry != null && now < entry.expiresAt + STALE_GRACE_MILLIS) {
+                return entry.addresses;
+            }
+            throw e;
+        }
+        List<InetAddress> sorted = Collections.unmodifiableList(interleave(addresses));
+        if (mTtlMillis > 0) {
+            mCache.put(hostname, new Entry(sorted, now + mTtlMillis));
+        }
+        return sorted;
+    }
+
+    /**
+     * 切换网络后旧网络的解析结果可能不可用，调用方可以清空缓存
+     */
+    public void clear() {
+        mCache.clear();
+    }
+
+    /**
+     * 保持系统返回的首选协议族在前，之后两个协议族交替
+     */
+    static List<InetAddress> interleave(List<InetAddress> addresses) {
+        List<InetAddress> v6 = new ArrayList<>();
+        List<InetAddress> v4 = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet6Address) {
+                v6.add(address);
+            } else {
+                v4.add(address);
+            }
+        }
+        if (v6.isEmpty() || v4.isEmpty()) {
+            return new ArrayList<>(addresses);
+        }
+        List<InetAddress> first = addresses.get(0) instanceof Inet6Address ? v6 : v4;
+        List<InetAddress> second = first == v6 ? v4 : v6;
+        List<InetAddress> result = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) {
+                result.add(first.get(i));
+            }
+            if (i < second.size()) {
+                result.add(second.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static class Entry {
+        private final List<InetAddress> addresses;
+        private final long expiresAt;
+
+        Entry(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
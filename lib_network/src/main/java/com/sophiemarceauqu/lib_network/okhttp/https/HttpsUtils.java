@@ -2,7 +2,7 @@ package com.sophiemarceauqu.lib_network.okhttp.https;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.KeyManagementException;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -11,34 +11,99 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
 
+/**
+ * https相关的SSLSocketFactory和TrustManager
+ * 同一个SSLContext创建的连接共享TLS会话缓存，重连时可以恢复会话(session resumption)，
+ * 省掉完整握手的一次往返和证书校验，所以SSLContext只创建一次，重建OkHttpClient时继续使用
+ */
 public class HttpsUtils {
-    public static SSLSocketFactory getSslSocketFactory(InputStream[] certificates, InputStream bksFile, String password) {
+    //客户端会话缓存，按host:port保存，一个app连接的host不多
+    private static final int SESSION_CACHE_SIZE = 64;
+    private static final int SESSION_TIMEOUT_SECONDS = 12 * 60 * 60;
+
+    private static SSLParams sSystemSslParams;
+
+    /**
+     * 配套的SSLSocketFactory和X509TrustManager，对应OkHttpClient.Builder.sslSocketFactory的两个参数
+     */
+    public static class SSLParams {
+        public final SSLSocketFactory sslSocketFactory;
+        public final X509TrustManager trustManager;
+
+        SSLParams(SSLSocketFactory sslSocketFactory, X509TrustManager trustManager) {
+            this.sslSocketFactory = sslSocketFactory;
+            this.trustManager = trustManager;
+        }
+    }
+
+    /**
+     * 只信任系统证书，进程内共享一个SSLContext
+     */
+    public static synchronized SSLParams systemSslParams() {
+        if (sSystemSslParams == null) {
+            try {
+                X509TrustManager trustManager = systemTrustManager();
+                sSystemSslParams = new SSLParams(newSslContext(null, trustManager).getSocketFactory(), trustManager);
+            } catch (GeneralSecurityException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return sSystemSslParams;
+    }
+
+    /**
+     * 在系统证书之外信任certificates中的证书，bksFile不为空时提供客户端证书
+     * 每次调用创建新的SSLContext，应只创建一次后通过OkHttpConfig.Builder.sslParams传入
+     */
+    public static SSLParams sslParams(InputStream[] certificates, InputStream bksFile, String password) {
         try {
             TrustManager[] trustManagers = prepareTrustManager(certificates);
             KeyManager[] keyManagers = prepareKeyManager(bksFile, password);
-            SSLContext sslContext = SSLContext.getInstance("SSL");
-
-            sslContext.init(keyManagers, new TrustManager[]
-                    {new MyTrustManager(chooseTrustManager(trustManagers))}, new SecureRandom());
-            return sslContext.getSocketFactory();
-        } catch (NoSuchAlgorithmException e) {
-            throw new AssertionError(e);
-        } catch (KeyManagementException e) {
-            throw new AssertionError(e);
-        } catch (KeyStoreException e) {
+            X509TrustManager trustManager = new MyTrustManager(
+                    trustManagers == null ? null : chooseTrustManager(trustManagers));
+            return new SSLParams(newSslContext(keyManagers, trustManager).getSocketFactory(), trustManager);
+        } catch (GeneralSecurityException e) {
             throw new AssertionError(e);
         }
     }
 
+    public static SSLSocketFactory getSslSocketFactory(InputStream[] certificates, InputStream bksFile, String password) {
+        return sslParams(certificates, bksFile, password).sslSocketFactory;
+    }
+
+    private static SSLContext newSslContext(KeyManager[] keyManagers, X509TrustManager trustManager)
+            throws GeneralSecurityException {
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers, new TrustManager[]{trustManager}, new SecureRandom());
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        if (sessionContext != null) {
+            sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessionContext.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+        }
+        return sslContext;
+    }
+
+    private static X509TrustManager systemTrustManager() throws GeneralSecurityException {
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init((KeyStore) null);
+        X509TrustManager trustManager = chooseTrustManager(factory.getTrustManagers());
+        if (trustManager == null) {
+            throw new KeyStoreException("no X509TrustManager");
+        }
+        return trustManager;
+    }
+
     private static TrustManager[] prepareTrustManager(InputStream... certificates) {
         if (certificates == null || certificates.length <= 0)
             return null;
@@ -119,10 +184,8 @@ public class HttpsUtils {
         private X509TrustManager defaultTrustManager;
         private X509TrustManager localTrustManager;
 
-        public MyTrustManager(X509TrustManager localTrustManager) throws NoSuchAlgorithmException, KeyStoreException {
-            TrustManagerFactory var4 = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-            var4.init((KeyStore) null);
-            defaultTrustManager = chooseTrustManager(var4.getTrustManagers());
+        public MyTrustManager(X509TrustManager localTrustManager) throws GeneralSecurityException {
+            defaultTrustManager = systemTrustManager();
             this.localTrustManager = localTrustManager;
         }
 
@@ -136,17 +199,32 @@ public class HttpsUtils {
             try {
                 defaultTrustManager.checkServerTrusted(chain, authType);
             } catch (CertificateException ce) {
+                if (localTrustManager == null) {
+                    throw ce;
+                }
                 localTrustManager.checkServerTrusted(chain, authType);
             }
         }
 
+        //OkHttp按这里返回的根证书清理证书链，证书锁定依赖它，不能返回空数组
         @Override
         public X509Certificate[] getAcceptedIssuers() {
-            return new X509Certificate[0];
+            X509Certificate[] system = defaultTrustManager.getAcceptedIssuers();
+            if (localTrustManager == null) {
+                return system;
+            }
+            X509Certificate[] local = localTrustManager.getAcceptedIssuers();
+            X509Certificate[] issuers = Arrays.copyOf(system, system.length + local.length);
+            System.arraycopy(local, 0, issuers, system.length, local.length);
+            return issuers;
         }
     }
 
 
+    /**
+     * 信任所有证书，只用于调试，不要用在正式请求上
+     */
+    @Deprecated
     public static SSLSocketFactory initSSLSocketFactory() {
         SSLContext sslContext = null;
         try {
@@ -161,6 +239,10 @@ public class HttpsUtils {
         return sslContext.getSocketFactory();
     }
 
+    /**
+     * 信任所有证书，只用于调试，不要用在正式请求上
+     */
+    @Deprecated
     public static X509TrustManager initTrustManager() {
         X509TrustManager mTrustManager = new X509TrustManager() {
             @Override
@@ -0,0 +1,35 @@
+package com.sophiemarceauqu.lib_network.okhttp.interceptor;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 网络拦截器：服务端没有下发Cache-Control的GET响应，补上no-cache
+ * 这样响应会进入磁盘缓存，但每次使用前都带ETag/Last-Modified做条件请求，
+ * 数据未变时服务端只需返回304
+ */
+public class CacheRevalidateInterceptor implements Interceptor {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!"GET".equals(request.method()) || response.header("Cache-Control") != null) {
+            return response;
+        }
+        if (request.cacheControl().noStore()) {
+            //文件下载等明确不进缓存的请求
+            return response;
+        }
+        if (response.header("ETag") == null && response.header("Last-Modified") == null) {
+            //没有校验字段，缓存了也无法条件请求
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
+}
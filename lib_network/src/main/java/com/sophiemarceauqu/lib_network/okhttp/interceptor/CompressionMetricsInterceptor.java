@@ -0,0 +1,84 @@
+package com.sophiemarceauqu.lib_network.okhttp.interceptor;
+
+import com.sophiemarceauqu.lib_network.okhttp.metrics.NetworkMetrics;
+import com.sophiemarceauqu.lib_network.okhttp.request.GzipRequestBody;
+
+import java.io.IOException;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * 统计压缩效果，作为应用拦截器添加
+ * 1OkHttp在请求没有指定Accept-Encoding时自动带上gzip并透明解压，这里统计解压后的字节数，
+ * 与EventListener统计的传输字节数对比得到压缩率，并统计服务端实际返回gzip的比例
+ * 2GzipRequestBody发送完后记录压缩前后的大小
+ * 缓存命中(含304)的响应体来自本地，不统计
+ */
+public class CompressionMetricsInterceptor implements Interceptor {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (request.body() instanceof GzipRequestBody) {
+            GzipRequestBody body = (GzipRequestBody) request.body();
+            NetworkMetrics.recordRequestCompression(request.url(), body.rawBytes(), body.compressedBytes());
+        }
+        ResponseBody body = response.body();
+        Response networkResponse = response.networkResponse();
+        //304时响应体来自缓存
+        if (body == null || networkResponse == null || networkResponse.code() == 304) {
+            return response;
+        }
+        boolean gzip = "gzip".equalsIgnoreCase(networkResponse.header("Content-Encoding"));
+        CountingSource source = new CountingSource(body.source(), response.request().url(), gzip);
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+                .build();
+    }
+
+    //读完或关闭时记录一次
+    private static class CountingSource extends ForwardingSource {
+        private final HttpUrl url;
+        private final boolean gzip;
+        private long count;
+        private boolean recorded;
+
+        CountingSource(Source delegate, HttpUrl url, boolean gzip) {
+            super(delegate);
+            this.url = url;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read == -1) {
+                record();
+            } else {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            record();
+            super.close();
+        }
+
+        private void record() {
+            if (!recorded) {
+                recorded = true;
+                NetworkMetrics.recordResponseBody(url, count, gzip);
+            }
+        }
+    }
+}
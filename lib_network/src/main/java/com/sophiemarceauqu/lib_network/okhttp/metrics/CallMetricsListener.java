@@ -0,0 +1,167 @@
+package com.sophiemarceauqu.lib_network.okhttp.metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 一次Call的各阶段计时，每个Call一个实例
+ * 重试或重定向时同一阶段可能发生多次，耗时与字节数累加
+ */
+class CallMetricsListener extends EventListener {
+    private final String mEndpoint;
+    private final EndpointMetrics mMetrics;
+
+    private long mCallStart;
+    private long mDnsStart;
+    private long mConnectStart;
+    private long mSecureStart;
+    private long mRequestSent;
+    private long mBodyStart;
+    private boolean mConnected;
+
+    private long mDns = -1;
+    private long mConnect = -1;
+    private long mTls = -1;
+    private long mTtfb = -1;
+    private long mBodyRead = -1;
+    private long mBytesOut;
+    private long mBytesIn;
+
+    CallMetricsListener(String endpoint, EndpointMetrics metrics) {
+        mEndpoint = endpoint;
+        mMetrics = metrics;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        mCallStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        mDnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        mDns = add(mDns, mDnsStart);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        mConnectStart = System.nanoTime();
+        mConnected = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        mSecureStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        mTls = add(mTls, mSecureStart);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        mConnect = add(mConnect, mConnectStart);
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                              IOException ioe) {
+        //失败的地址也算在建连耗时里，之后会尝试下一个地址
+        mConnect = add(mConnect, mConnectStart);
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        if (!mConnected) {
+            mMetrics.recordReused();
+        }
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        mRequestSent = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        mRequestSent = System.nanoTime();
+        mBytesOut += byteCount;
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        mTtfb = add(mTtfb, mRequestSent);
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        //重定向或重试后会重新建连，重新判断是否复用
+        mConnected = false;
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        mBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        mBodyRead = add(mBodyRead, mBodyStart);
+        mBytesIn += byteCount;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        finish(true);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        finish(false);
+    }
+
+    private void finish(boolean success) {
+        long total = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mCallStart);
+        record(mMetrics.dns, mDns);
+        record(mMetrics.connect, mConnect);
+        record(mMetrics.tls, mTls);
+        record(mMetrics.ttfb, mTtfb);
+        record(mMetrics.bodyRead, mBodyRead);
+        mMetrics.total.record(total);
+        mMetrics.bytesOut.record(mBytesOut);
+        mMetrics.bytesIn.record(mBytesIn);
+        if (!success) {
+            mMetrics.recordFailure();
+        }
+        NetworkMetrics.onCallFinished(mEndpoint, success, total, mDns, mConnect, mTls, mTtfb, mBodyRead);
+    }
+
+    private static long add(long accumulated, long startNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return accumulated < 0 ? millis : accumulated + millis;
+    }
+
+    //阶段没有发生(如复用连接没有dns)时不记录
+    private static void record(Histogram histogram, long millis) {
+        if (millis >= 0) {
+            histogram.record(millis);
+        }
+    }
+}
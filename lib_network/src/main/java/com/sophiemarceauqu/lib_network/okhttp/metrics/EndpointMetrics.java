@@ -0,0 +1,100 @@
+package com.sophiemarceauqu.lib_network.okhttp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个接口(host + path，不含参数)的各阶段耗时(毫秒)与流量(字节)
+ * 复用连接池里的连接时没有dns，connect，tls阶段，这三个直方图只统计真正发生的建连
+ */
+public class EndpointMetrics {
+    public final Histogram dns = new Histogram();
+    public final Histogram connect = new Histogram();
+    public final Histogram tls = new Histogram();
+    //请求发送完到收到响应头
+    public final Histogram ttfb = new Histogram();
+    public final Histogram bodyRead = new Histogram();
+    public final Histogram total = new Histogram();
+    public final Histogram bytesOut = new Histogram();
+    public final Histogram bytesIn = new Histogram();
+    //解压后的响应体字节数，只统计来自网络的响应
+    public final Histogram bytesDecoded = new Histogram();
+    private final AtomicLong mFailures = new AtomicLong();
+    private final AtomicLong mReusedConnections = new AtomicLong();
+    private final AtomicLong mNetworkResponses = new AtomicLong();
+    private final AtomicLong mGzipResponses = new AtomicLong();
+    private final AtomicLong mRequestRawBytes = new AtomicLong();
+    private final AtomicLong mRequestGzipBytes = new AtomicLong();
+
+    public long failures() {
+        return mFailures.get();
+    }
+
+    //没有新建连接，直接复用连接池的请求数
+    public long reusedConnections() {
+        return mReusedConnections.get();
+    }
+
+    //服务端返回gzip的响应数/来自网络的响应数
+    public long gzipResponses() {
+        return mGzipResponses.get();
+    }
+
+    public long networkResponses() {
+        return mNetworkResponses.get();
+    }
+
+    /**
+     * @return 响应的传输字节/解压后字节，近似值，没有数据时返回1
+     */
+    public double responseCompressionRatio() {
+        long decoded = bytesDecoded.sum();
+        return decoded == 0 ? 1 : (double) bytesIn.sum() / decoded;
+    }
+
+    /**
+     * @return gzip请求体压缩后/压缩前的字节数，没有gzip请求时返回1
+     */
+    public double requestCompressionRatio() {
+        long raw = mRequestRawBytes.get();
+        return raw == 0 ? 1 : (double) mRequestGzipBytes.get() / raw;
+    }
+
+    void recordResponseBody(long decodedBytes, boolean gzip) {
+        bytesDecoded.record(decodedBytes);
+        mNetworkResponses.incrementAndGet();
+        if (gzip) {
+            mGzipResponses.incrementAndGet();
+        }
+    }
+
+    void recordRequestCompression(long rawBytes, long compressedBytes) {
+        mRequestRawBytes.addAndGet(rawBytes);
+        mRequestGzipBytes.addAndGet(compressedBytes);
+    }
+
+    void recordFailure() {
+        mFailures.incrementAndGet();
+    }
+
+    void recordReused() {
+        mReusedConnections.incrementAndGet();
+    }
+
+    void reset() {
+        dns.reset();
+        connect.reset();
+        tls.reset();
+        ttfb.reset();
+        bodyRead.reset();
+        total.reset();
+        bytesOut.reset();
+        bytesIn.reset();
+        bytesDecoded.reset();
+        mFailures.set(0);
+        mReusedConnections.set(0);
+        mNetworkResponses.set(0);
+        mGzipResponses.set(0);
+        mRequestRawBytes.set(0);
+        mRequestGzipBytes.set(0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.sophiemarceauqu.lib_network.okhttp.metrics;
+
+/**
+ * 按指数分桶的直方图，相邻桶边界相差20%，分位数的相对误差不超过20%
+ * 内存固定(128个桶)，可以长期累积，记录与读取都是线程安全的
+ */
+public class Histogram {
+    private static final double GROWTH = 1.2;
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+    //1.2^127约等于1.1e10，足够容纳毫秒耗时和字节数
+    private static final int BUCKETS = 128;
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mCount;
+    private long mSum;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax;
+
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts[bucketOf(value)]++;
+        mCount++;
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    public synchronized long count() {
+        return mCount;
+    }
+
+    public synchronized long sum() {
+        return mSum;
+    }
+
+    public synchronized long min() {
+        return mCount == 0 ? 0 : mMin;
+    }
+
+    public synchronized long max() {
+        return mMax;
+    }
+
+    public synchronized long mean() {
+        return mCount == 0 ? 0 : mSum / mCount;
+    }
+
+    /**
+     * @param percent 0到100，如50表示p50，99表示p99
+     * @return 对应分位所在桶的上界，限定在[min, max]之间；没有数据时返回0
+     */
+    public synchronized long percentile(double percent) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * mCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.max(mMin, Math.min(mMax, upperBound(i)));
+            }
+        }
+        return mMax;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+
+    private static int bucketOf(long value) {
+        if (value <= 1) {
+            return 0;
+        }
+        return (int) Math.min(BUCKETS - 1, Math.ceil(Math.log(value) / LOG_GROWTH));
+    }
+
+    private static long upperBound(int bucket) {
+        return (long) Math.floor(Math.pow(GROWTH, bucket));
+    }
+}
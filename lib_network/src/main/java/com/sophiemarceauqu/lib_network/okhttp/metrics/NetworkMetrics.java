@@ -0,0 +1,166 @@
+package com.sophiemarceauqu.lib_network.okhttp.metrics;
+
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+
+/**
+ * 网络请求分阶段耗时统计，通过OkHttpConfig.Builder.eventListenerFactory(NetworkMetrics.FACTORY)开启(默认开启)
+ * 1按接口(host + path)汇总dns，connect，tls，ttfb，body读取，总耗时和上下行字节数的直方图，以及压缩率
+ * 2dump()输出所有接口的p50/p99，get(url)取单个接口的数据
+ * 3总耗时超过阈值的请求打印各阶段耗时
+ * 4路径中的数字id，长hex和uuid归一为{id}；接口数超过MAX_ENDPOINTS后，新接口按host汇总到host/*，内存有上限
+ */
+public class NetworkMetrics {
+    private static final String TAG = "NetworkMetrics";
+    private static final int MAX_ENDPOINTS = 200;
+    private static final String ID_SEGMENT = "{id}";
+    private static final String OVERFLOW_PATH = "/*";
+    private static final Pattern ID_PATTERN = Pattern.compile("\\d+|[0-9a-fA-F]{16,}"
+            + "|[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private static final ConcurrentHashMap<String, EndpointMetrics> sEndpoints = new ConcurrentHashMap<>();
+    private static volatile long sSlowRequestMillis = 3000;
+
+    public static final EventListener.Factory FACTORY = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            String endpoint = keyOf(call.request().url());
+            return new CallMetricsListener(endpoint, obtain(endpoint));
+        }
+    };
+
+    /**
+     * @param millis 慢请求阈值，小于等于0时不打印
+     */
+    public static void setSlowRequestThreshold(long millis) {
+        sSlowRequestMillis = millis;
+    }
+
+    /**
+     * @param url 完整url或host + path，参数会被忽略
+     * @return 没有请求过时返回null，超过接口数上限后的新接口返回所在host的汇总
+     */
+    public static EndpointMetrics get(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            return sEndpoints.get(url);
+        }
+        EndpointMetrics metrics = sEndpoints.get(endpointOf(httpUrl));
+        return metrics != null ? metrics : sEndpoints.get(httpUrl.host() + OVERFLOW_PATH);
+    }
+
+    /**
+     * 按接口名排序的快照，直方图本身是实时数据
+     */
+    public static Map<String, EndpointMetrics> snapshot() {
+        return new TreeMap<>(sEndpoints);
+    }
+
+    public static void reset() {
+        for (EndpointMetrics metrics : sEndpoints.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * 所有接口各阶段的请求数，p50/p99(毫秒)和平均流量，便于打印或上报
+     */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, EndpointMetrics> entry : snapshot().entrySet()) {
+            EndpointMetrics metrics = entry.getValue();
+            builder.append(entry.getKey())
+                    .append(" count=").append(metrics.total.count())
+                    .append(" failures=").append(metrics.failures())
+                    .append(" reused=").append(metrics.reusedConnections()).append('\n');
+            appendPhase(builder, "total", metrics.total);
+            appendPhase(builder, "dns", metrics.dns);
+            appendPhase(builder, "connect", metrics.connect);
+            appendPhase(builder, "tls", metrics.tls);
+            appendPhase(builder, "ttfb", metrics.ttfb);
+            appendPhase(builder, "body", metrics.bodyRead);
+            builder.append("  bytes out=").append(metrics.bytesOut.mean())
+                    .append(" in=").append(metrics.bytesIn.mean())
+                    .append(" decoded=").append(metrics.bytesDecoded.mean())
+                    .append(" (mean) gzip=").append(metrics.gzipResponses())
+                    .append('/').append(metrics.networkResponses())
+                    .append(String.format(Locale.US, " ratio in=%.2f out=%.2f\n",
+                            metrics.responseCompressionRatio(), metrics.requestCompressionRatio()));
+        }
+        return builder.toString();
+    }
+
+    private static void appendPhase(StringBuilder builder, String name, Histogram histogram) {
+        if (histogram.count() == 0) {
+            return;
+        }
+        builder.append("  ").append(name)
+                .append(" n=").append(histogram.count())
+                .append(" p50=").append(histogram.percentile(50))
+                .append(" p99=").append(histogram.percentile(99))
+                .append(" max=").append(histogram.max()).append('\n');
+    }
+
+    /**
+     * 记录来自网络的响应体解压后的大小，由CompressionMetricsInterceptor调用
+     */
+    public static void recordResponseBody(HttpUrl url, long decodedBytes, boolean gzip) {
+        obtain(keyOf(url)).recordResponseBody(decodedBytes, gzip);
+    }
+
+    /**
+     * 记录gzip请求体压缩前后的大小
+     */
+    public static void recordRequestCompression(HttpUrl url, long rawBytes, long compressedBytes) {
+        obtain(keyOf(url)).recordRequestCompression(rawBytes, compressedBytes);
+    }
+
+    static void onCallFinished(String endpoint, boolean success, long total, long dns, long connect, long tls,
+                               long ttfb, long bodyRead) {
+        long threshold = sSlowRequestMillis;
+        if (threshold > 0 && total > threshold) {
+            Log.w(TAG, "slow request " + total + "ms " + endpoint + (success ? "" : " failed")
+                    + " dns=" + dns + " connect=" + connect + " tls=" + tls
+                    + " ttfb=" + ttfb + " body=" + bodyRead);
+        }
+    }
+
+    private static EndpointMetrics obtain(String endpoint) {
+        EndpointMetrics metrics = sEndpoints.get(endpoint);
+        if (metrics == null) {
+            EndpointMetrics created = new EndpointMetrics();
+            metrics = sEndpoints.putIfAbsent(endpoint, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    //超过上限后不再新增接口，新接口计入所在host的汇总
+    private static String keyOf(HttpUrl url) {
+        String endpoint = endpointOf(url);
+        if (sEndpoints.size() >= MAX_ENDPOINTS && !sEndpoints.containsKey(endpoint)) {
+            return url.host() + OVERFLOW_PATH;
+        }
+        return endpoint;
+    }
+
+    //host + path，路径中的id段归一，同一接口不同资源只占一个key
+    private static String endpointOf(HttpUrl url) {
+        StringBuilder builder = new StringBuilder(url.host());
+        for (String segment : url.encodedPathSegments()) {
+            builder.append('/').append(ID_PATTERN.matcher(segment).matches() ? ID_SEGMENT : segment);
+        }
+        return builder.toString();
+    }
+}
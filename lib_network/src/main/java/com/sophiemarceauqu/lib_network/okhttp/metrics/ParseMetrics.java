@@ -0,0 +1,29 @@
+package com.sophiemarceauqu.lib_network.okhttp.metrics;
+
+import android.util.Log;
+
+/**
+ * 解析耗时统计，超过一帧的解析打印警告，详细数据交给外部监听者上报
+ */
+public class ParseMetrics {
+    private static final String TAG = "ParseMetrics";
+    //超过一帧(16ms)即认为是慢解析
+    private static final long SLOW_PARSE_MILLIS = 16;
+
+    private static volatile ParseMetricsListener sListener;
+
+    public static void setListener(ParseMetricsListener listener) {
+        sListener = listener;
+    }
+
+    public static void record(String url, Class<?> clazz, long queueMillis, long parseMillis, boolean success) {
+        if (parseMillis > SLOW_PARSE_MILLIS) {
+            Log.w(TAG, "slow parse " + parseMillis + "ms(queue " + queueMillis + "ms) "
+                    + clazz.getSimpleName() + " " + url);
+        }
+        ParseMetricsListener listener = sListener;
+        if (listener != null) {
+            listener.onParsed(url, clazz, queueMillis, parseMillis, success);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.sophiemarceauqu.lib_network.okhttp.metrics;
+
+/**
+ * @function 监听每个请求的解析耗时
+ */
+public interface ParseMetricsListener {
+    /**
+     * 解析线程上回调，不要做耗时操作
+     *
+     * @param url         请求地址
+     * @param clazz       解析的目标实体类
+     * @param queueMillis 提交到开始解析的排队时间
+     * @param parseMillis 解析耗时，包含读取响应流
+     * @param success     是否解析成功
+     */
+    void onParsed(String url, Class<?> clazz, long queueMillis, long parseMillis, boolean success);
+}
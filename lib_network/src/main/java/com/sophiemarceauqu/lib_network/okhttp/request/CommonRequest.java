@@ -1,10 +1,16 @@
 package com.sophiemarceauqu.lib_network.okhttp.request;
 
 import java.io.File;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 import okhttp3.FormBody;
 import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.Request;
@@ -54,11 +60,6 @@ public class CommonRequest {
     }
 
     public static Request createGetRequest(String url, RequestParams params, RequestParams headers) {
-        StringBuilder urlBuilder = new StringBuilder(url).append("?");
-        for (Map.Entry<String, String> entry : params.urlParams.entrySet()) {
-            //参数遍历
-            urlBuilder.append(entry.getKey()).append("=").append(entry.getValue());
-        }
         Headers.Builder mHeadBuilder = new Headers.Builder();
         if (headers != null) {
             for (Map.Entry<String, String> entry : headers.urlParams.entrySet()) {
@@ -68,15 +69,66 @@ public class CommonRequest {
         }
 
         return new Request.Builder()
-                .url(url)
+                .url(createGetUrl(url, params))
                 .headers(mHeadBuilder.build())
                 .get()
                 .build();
     }
 
+    /**
+     * 拼接get参数，参数只由HttpUrl编码一次
+     * url中原有的参数和params合并后按名字(相同时按值)排序，同样的参数不论put顺序都得到同样的url，
+     * http缓存和相同请求合并都以url为key
+     */
+    public static HttpUrl createGetUrl(String url, RequestParams params) {
+        HttpUrl base = HttpUrl.parse(url);
+        if (base == null) {
+            throw new IllegalArgumentException("unexpected url: " + url);
+        }
+        int paramCount = params == null ? 0 : params.urlParams.size();
+        if (paramCount == 0 && base.querySize() <= 1) {
+            return base;
+        }
+        List<Map.Entry<String, String>> query = new ArrayList<>(base.querySize() + paramCount);
+        for (int i = 0; i < base.querySize(); i++) {
+            query.add(new AbstractMap.SimpleImmutableEntry<>(base.queryParameterName(i), base.queryParameterValue(i)));
+        }
+        if (params != null) {
+            query.addAll(params.urlParams.entrySet());
+        }
+        Collections.sort(query, QUERY_ORDER);
+        HttpUrl.Builder builder = base.newBuilder().query(null);
+        for (Map.Entry<String, String> entry : query) {
+            builder.addQueryParameter(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    //按名字排序，同名参数按值排序，没有值的在前
+    private static final Comparator<Map.Entry<String, String>> QUERY_ORDER = new Comparator<Map.Entry<String, String>>() {
+        @Override
+        public int compare(Map.Entry<String, String> a, Map.Entry<String, String> b) {
+            int result = a.getKey().compareTo(b.getKey());
+            if (result != 0) {
+                return result;
+            }
+            if (a.getValue() == null || b.getValue() == null) {
+                return a.getValue() == null ? (b.getValue() == null ? 0 : -1) : 1;
+            }
+            return a.getValue().compareTo(b.getValue());
+        }
+    };
+
     public static final MediaType FILE_TYPE = MediaType.parse("application/octet-stream");
 
     public static Request createMultiPostRequest(String url, RequestParams params) {
+        return createMultiPostRequest(url, params, false);
+    }
+
+    /**
+     * @param gzip 请求体gzip压缩后发送，适合较大的文本类上传，服务端需支持Content-Encoding: gzip
+     */
+    public static Request createMultiPostRequest(String url, RequestParams params, boolean gzip) {
         MultipartBody.Builder requestBody = new MultipartBody.Builder();
         requestBody.setType(MultipartBody.FORM);
         if (params != null) {
@@ -91,6 +143,12 @@ public class CommonRequest {
             }
         }
 
+        if (gzip) {
+            return new Request.Builder().url(url)
+                    .header("Content-Encoding", "gzip")
+                    .post(new GzipRequestBody(requestBody.build()))
+                    .build();
+        }
         return new Request.Builder().url(url).post(requestBody.build()).build();
     }
 }
@@ -0,0 +1,83 @@
+package com.sophiemarceauqu.lib_network.okhttp.request;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * 发送时gzip压缩的请求体，请求需同时带Content-Encoding: gzip，服务端需支持解压
+ * 压缩后长度未知，以chunked方式发送，不需要先把整个请求体放进内存
+ * 图片，音视频等已经压缩过的内容不要再用
+ */
+public class GzipRequestBody extends RequestBody {
+    private final RequestBody mDelegate;
+    private volatile long mRawBytes;
+    private volatile long mCompressedBytes;
+
+    public GzipRequestBody(RequestBody delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mDelegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        CountingSink compressed = new CountingSink(sink, false);
+        CountingSink raw = new CountingSink(new GzipSink(compressed), true);
+        BufferedSink gzipSink = Okio.buffer(raw);
+        mDelegate.writeTo(gzipSink);
+        //关闭GzipSink写出gzip尾部，外层的sink不会被关闭
+        gzipSink.close();
+        mRawBytes = raw.count;
+        mCompressedBytes = compressed.count;
+    }
+
+    //最近一次发送的原始字节数
+    public long rawBytes() {
+        return mRawBytes;
+    }
+
+    //最近一次发送的压缩后字节数
+    public long compressedBytes() {
+        return mCompressedBytes;
+    }
+
+    private static class CountingSink extends ForwardingSink {
+        private final boolean closeDelegate;
+        private long count;
+
+        CountingSink(Sink delegate, boolean closeDelegate) {
+            super(delegate);
+            this.closeDelegate = closeDelegate;
+        }
+
+        //请求体的sink由OkHttp负责关闭
+        @Override
+        public void close() throws IOException {
+            if (closeDelegate) {
+                super.close();
+            }
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            count += byteCount;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.sophiemarceauqu.lib_network.okhttp.request;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import com.sophiemarceauqu.lib_network.okhttp.CommonOkHttpClient;
+
+import java.util.WeakHashMap;
+
+/**
+ * 与Activity/Fragment生命周期绑定的请求组，作为请求的tag使用
+ * 页面销毁时自动取消组内所有请求：排队中的丢弃，已发出的cancel，已返回的不再解析和回调，
+ * 销毁后再用此组发出的请求直接丢弃
+ * 只能在主线程使用
+ */
+public class RequestGroup implements LifecycleObserver {
+    private static final WeakHashMap<LifecycleOwner, RequestGroup> sGroups = new WeakHashMap<>();
+
+    private final LifecycleOwner mOwner;
+    private volatile boolean mCanceled;
+
+    /**
+     * 同一个页面返回同一个组，Fragment建议传getViewLifecycleOwner()
+     */
+    public static RequestGroup of(LifecycleOwner owner) {
+        RequestGroup group = sGroups.get(owner);
+        if (group == null) {
+            group = new RequestGroup(owner);
+            if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+                group.mCanceled = true;
+            } else {
+                sGroups.put(owner, group);
+                owner.getLifecycle().addObserver(group);
+            }
+        }
+        return group;
+    }
+
+    private RequestGroup(LifecycleOwner owner) {
+        mOwner = owner;
+    }
+
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * 提前取消组内所有请求
+     */
+    public void cancel() {
+        mCanceled = true;
+        CommonOkHttpClient.cancelTag(this);
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    void onDestroy() {
+        cancel();
+        mOwner.getLifecycle().removeObserver(this);
+        sGroups.remove(mOwner);
+    }
+}
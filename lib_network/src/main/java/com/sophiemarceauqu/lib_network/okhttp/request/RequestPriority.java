@@ -0,0 +1,15 @@
+package com.sophiemarceauqu.lib_network.okhttp.request;
+
+/**
+ * 请求优先级，排队时高优先级先发出，已经发出的请求不会被抢占
+ */
+public enum RequestPriority {
+    //用户正在等待结果的操作，如登录，不受并发数限制
+    INTERACTIVE,
+    //页面数据
+    FEED,
+    //预加载
+    PREFETCH,
+    //大文件下载
+    BULK
+}
@@ -2,21 +2,34 @@ package com.sophiemarceauqu.lib_network.okhttp.response;
 
 import android.os.Handler;
 import android.os.Looper;
-import android.os.Message;
+import android.os.SystemClock;
 
 import com.sophiemarceauqu.lib_network.okhttp.exception.OkHttpException;
 import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
 import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDownloadListener;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import okhttp3.CacheControl;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
 
+/**
+ * 文件下载回调
+ * 1先写入 文件路径.part，完成后改名为目标文件，失败时不会留下不完整的目标文件
+ * 2.part保留用于断点续传，下次下载带Range和If-Range，服务端文件变化时重新下载
+ * 3Okio分段直接从socket缓冲转移到文件缓冲，不经过中间byte[]
+ * 4进度按固定间隔合并，主线程上最多只有一个待处理的进度消息
+ */
 public class CommonFileCallback implements Callback {
     /**
      * the java layer exception, do not same to the logic error
@@ -25,33 +38,64 @@ public class CommonFileCallback implements Callback {
     protected final int IO_ERROR = -2; // the JSON relative error
     protected final String EMPTY_MSG = "";
 
+    private static final String PART_SUFFIX = ".part";
+    //记录.part对应的ETag/Last-Modified，续传时作为If-Range
+    private static final String META_SUFFIX = ".part.meta";
+    private static final long SEGMENT_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+    /**
+     * 下载请求不读也不写http缓存
+     */
+    public static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
 
     /**
      * 将其它线程的数据转发到UI线程
      */
-    private static final int PROGRESS_MESSAGE = 0x01;
     private Handler mDeliveryHandler;
     private DisposeDownloadListener mListener;
     private String mFilePath;
-    private int mProgress;
+    private final AtomicInteger mProgress = new AtomicInteger();
+    private final AtomicBoolean mProgressPending = new AtomicBoolean();
+    private final Runnable mProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mProgressPending.set(false);
+            mListener.onProgress(mProgress.get());
+        }
+    };
 
     public CommonFileCallback(DisposeDataHandle handle) {
         this.mListener = (DisposeDownloadListener) handle.mListener;
         this.mFilePath = handle.mSource;
-        this.mDeliveryHandler = new Handler(Looper.getMainLooper()) {
-            @Override
-            public void handleMessage(Message msg) {
-                switch (msg.what) {
-                    case PROGRESS_MESSAGE:
-                        mListener.onProgress((int) msg.obj);
-                        break;
-                }
-            }
-        };
+        this.mDeliveryHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * 本地有未完成的.part且知道其版本时，加上Range和If-Range从断点继续下载
+     * 下载不使用gzip，Range的偏移与文件字节一致，Content-Length也可用于计算进度
+     * 下载不经过http缓存，大文件不会挤掉缓存中的接口数据
+     */
+    public static Request resumeRequest(Request request, String filePath) {
+        Request.Builder builder = request.newBuilder()
+                .header("Accept-Encoding", "identity")
+                .cacheControl(NO_STORE);
+        File part = new File(filePath + PART_SUFFIX);
+        String validator = readValidator(new File(filePath + META_SUFFIX));
+        if (!part.isFile() || part.length() == 0 || validator == null) {
+            return builder.build();
+        }
+        return builder
+                .header("Range", "bytes=" + part.length() + "-")
+                .header("If-Range", validator)
+                .build();
     }
 
     @Override
     public void onFailure(Call call, final IOException e) {
+        if (call.isCanceled()) {
+            //主动取消的请求不再回调，调用方页面可能已经销毁
+            return;
+        }
         mDeliveryHandler.post(new Runnable() {
             @Override
             public void run() {
@@ -62,7 +106,15 @@ public class CommonFileCallback implements Callback {
 
     @Override
     public void onResponse(Call call, Response response) throws IOException {
-        final File file = handleResponse(response);
+        final File file;
+        try {
+            file = handleResponse(response);
+        } finally {
+            response.close();
+        }
+        if (file == null && call.isCanceled()) {
+            return;
+        }
         mDeliveryHandler.post(new Runnable() {
             @Override
             public void run() {
@@ -76,59 +128,132 @@ public class CommonFileCallback implements Callback {
     }
 
     private File handleResponse(Response response) {
-        if (response == null) {
+        File file = new File(mFilePath);
+        File part = new File(mFilePath + PART_SUFFIX);
+        File meta = new File(mFilePath + META_SUFFIX);
+        ResponseBody body = response.body();
+        if (body == null) {
+            return null;
+        }
+        long offset;
+        if (response.code() == 206) {
+            offset = rangeStart(response.header("Content-Range"));
+            if (offset != part.length()) {
+                //与本地不连续，丢弃.part，下次重新下载
+                part.delete();
+                meta.delete();
+                return null;
+            }
+        } else if (response.isSuccessful()) {
+            offset = 0;
+        } else {
+            if (response.code() == 416) {
+                part.delete();
+                meta.delete();
+            }
             return null;
         }
-
-        InputStream inputStream = null;
-        File file;
-        FileOutputStream fos = null;
-        byte[] buffer = new byte[2048];
-        int length;
-        int currentLength = 0;
-        double sumLength;
         try {
             checkLocalFilePath(mFilePath);
-            file = new File(mFilePath);
-            fos = new FileOutputStream(file);
-            inputStream = response.body().byteStream();
-            sumLength = (double) response.body().contentLength();
-            while ((length = inputStream.read(buffer)) != -1) {
-                fos.write(buffer, 0, length);
-                currentLength += length;
-                mProgress = (int) (currentLength / sumLength * 100);
-                mDeliveryHandler.obtainMessage(PROGRESS_MESSAGE, mProgress).sendToTarget();
+            if (offset == 0) {
+                writeValidator(meta, response);
             }
-        } catch (Exception e) {
-            file = null;
-        } finally {
+            long contentLength = body.contentLength();
+            long total = contentLength < 0 ? -1 : offset + contentLength;
+            BufferedSource source = body.source();
+            BufferedSink sink = Okio.buffer(offset == 0 ? Okio.sink(part) : Okio.appendingSink(part));
             try {
-                if (fos != null) {
-                    fos.close();
-                }
-                if (inputStream != null) {
-                    inputStream.close();
+                long current = offset;
+                long lastProgressTime = 0;
+                long read;
+                while ((read = source.read(sink.buffer(), SEGMENT_SIZE)) != -1) {
+                    sink.emitCompleteSegments();
+                    current += read;
+                    long now = SystemClock.uptimeMillis();
+                    if (total > 0 && now - lastProgressTime >= PROGRESS_INTERVAL_MILLIS) {
+                        lastProgressTime = now;
+                        postProgress((int) (current * 100 / total));
+                    }
                 }
-            } catch (Exception e) {
-                file = null;
+            } finally {
+                sink.close();
+            }
+            file.delete();
+            if (!part.renameTo(file)) {
+                return null;
             }
+            meta.delete();
+            postProgress(100);
+            return file;
+        } catch (IOException e) {
+            //.part保留，下次续传
+            return null;
         }
-        return file;
     }
 
-    private void checkLocalFilePath(String localFilePath) {
-        File path = new File(localFilePath.substring(0, localFilePath.lastIndexOf("/") + 1));
-        File file = new File(localFilePath);
-        if (!path.exists()) {
-            path.mkdirs();
+    //主线程还没处理上一个进度时只更新数值，不再发新消息
+    private void postProgress(int progress) {
+        mProgress.set(progress);
+        if (mProgressPending.compareAndSet(false, true)) {
+            mDeliveryHandler.post(mProgressRunnable);
+        }
+    }
+
+    //Content-Range: bytes 100-199/200
+    private static long rangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
         }
+    }
 
-        if (!file.exists()) {
+    private static void writeValidator(File meta, Response response) throws IOException {
+        String validator = response.header("ETag");
+        if (validator == null) {
+            validator = response.header("Last-Modified");
+        }
+        if (validator == null) {
+            //没有版本信息无法安全续传
+            meta.delete();
+            return;
+        }
+        BufferedSink sink = Okio.buffer(Okio.sink(meta));
+        try {
+            sink.writeUtf8(validator);
+        } finally {
+            sink.close();
+        }
+    }
+
+    private static String readValidator(File meta) {
+        if (!meta.isFile()) {
+            return null;
+        }
+        try {
+            BufferedSource source = Okio.buffer(Okio.source(meta));
             try {
-                file.createNewFile();
-            } catch (IOException e) {
-                e.printStackTrace();
+                String validator = source.readUtf8();
+                return validator.isEmpty() ? null : validator;
+            } finally {
+                source.close();
             }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void checkLocalFilePath(String localFilePath) {
+        File path = new File(localFilePath.substring(0, localFilePath.lastIndexOf("/") + 1));
+        if (!path.exists()) {
+            path.mkdirs();
         }
     }
 }
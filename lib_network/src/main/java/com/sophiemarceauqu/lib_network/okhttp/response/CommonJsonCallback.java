@@ -1,15 +1,16 @@
 package com.sophiemarceauqu.lib_network.okhttp.response;
 
 
-import android.os.Handler;
-import android.os.Looper;
-
 import com.sophiemarceauqu.lib_network.okhttp.exception.OkHttpException;
 import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
 import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataListener;
-import com.sophiemarceauqu.lib_network.okhttp.utils.ResponseEntityToModule;
+import com.sophiemarceauqu.lib_network.okhttp.metrics.ParseMetrics;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -27,18 +28,22 @@ public class CommonJsonCallback implements Callback {
 
     private DisposeDataListener mListener;
     private Class<?> mClass;
-    private Handler mDeliveryHandler;
+    private Executor mDelivery;
 
     public CommonJsonCallback(DisposeDataHandle handle){
         mListener = handle.mListener;
         mClass = handle.mClass;
-        mDeliveryHandler = new Handler(Looper.getMainLooper());
+        mDelivery = ResponseDelivery.get();
     }
 
 
     @Override
     public void onFailure(Call call,final IOException e) {
-        mDeliveryHandler.post(new Runnable() {
+        if (call.isCanceled()) {
+            //主动取消的请求不再回调，调用方页面可能已经销毁
+            return;
+        }
+        mDelivery.execute(new Runnable() {
             @Override
             public void run() {
                 mListener.onFailure(new OkHttpException(NETWORK_ERROR,e));
@@ -47,37 +52,93 @@ public class CommonJsonCallback implements Callback {
     }
 
     @Override
-    public void onResponse(Call call, Response response) throws IOException {
+    public void onResponse(final Call call, final Response response) throws IOException {
+        if (call.isCanceled()) {
+            //页面已经销毁，不再读取和解析
+            response.body().close();
+            return;
+        }
+        if (mClass != null) {
+            try {
+                //先在okhttp线程读完响应体，RequestScheduler在本回调返回后才释放该host的名额，
+                //解析线程只处理内存中的数据，parseMillis不再包含网络读取
+                response.body().source().request(Long.MAX_VALUE);
+            } catch (IOException e) {
+                response.body().close();
+                onFailure(call, e);
+                return;
+            }
+            //需要解析的交给解析线程池从内存映射成实体，主线程只做回调
+            final long submitTime = System.nanoTime();
+            ParseExecutor.get().execute(new Runnable() {
+                @Override
+                public void run() {
+                    parseResponse(call, response, submitTime);
+                }
+            });
+            return;
+        }
         final String result = response.body().string();
-        mDeliveryHandler.post(new Runnable() {
+        mDelivery.execute(new Runnable() {
             @Override
             public void run() {
-                handleResponse(result);
+                if (!call.isCanceled()) {
+                    handleResponse(result);
+                }
             }
         });
     }
 
-    private void handleResponse(String result) {
-        if (result==null || result.trim().equals("")){
-            mListener.onFailure(new OkHttpException(NETWORK_ERROR,EMPTY_MSG));
+    private void parseResponse(final Call call, Response response, long submitTime) {
+        if (call.isCanceled()) {
+            //排队等待解析期间被取消
+            response.body().close();
             return;
         }
-
-        try{
-            //不需要解析直接回传str
-            if(mClass == null){
-                mListener.onSuccess(result);
-            }else{
-                //解析成 model实体对象 可用gson fastjson替换
-                Object obj = ResponseEntityToModule.parseJsonToModule(result,mClass);
-                if (obj!=null){
-                    mListener.onSuccess(obj);
-                }else{
-                    mListener.onFailure(new OkHttpException(JSON_ERROR,EMPTY_MSG));
+        long startTime = System.nanoTime();
+        Object obj = null;
+        OkHttpException error = null;
+        try {
+            obj = ModelStreamParser.parse(response.body().charStream(), mClass);
+            if (obj == null) {
+                error = new OkHttpException(JSON_ERROR, EMPTY_MSG);
+            }
+        } catch (EOFException e) {
+            //响应体为空
+            error = new OkHttpException(NETWORK_ERROR, EMPTY_MSG);
+        } catch (IOException e) {
+            error = new OkHttpException(JSON_ERROR, e);
+        } catch (Exception e) {
+            error = new OkHttpException(OTHER_ERROR, e);
+        } finally {
+            response.body().close();
+        }
+        ParseMetrics.record(response.request().url().toString(), mClass,
+                TimeUnit.NANOSECONDS.toMillis(startTime - submitTime),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), error == null);
+        final Object result = obj;
+        final OkHttpException exception = error;
+        mDelivery.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (call.isCanceled()) {
+                    return;
+                }
+                if (exception != null) {
+                    mListener.onFailure(exception);
+                } else {
+                    mListener.onSuccess(result);
                 }
             }
-        }catch (Exception e){
-            mListener.onFailure(new OkHttpException(OTHER_ERROR,e));
+        });
+    }
+
+    //不需要解析直接回传str
+    private void handleResponse(String result) {
+        if (result == null || result.trim().equals("")) {
+            mListener.onFailure(new OkHttpException(NETWORK_ERROR, EMPTY_MSG));
+            return;
         }
+        mListener.onSuccess(result);
     }
 }
@@ -0,0 +1,38 @@
+package com.sophiemarceauqu.lib_network.okhttp.response;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 请求结果的回调线程，默认为主线程
+ * 没有主线程Looper的环境(JVM单元测试，benchmark)用setExecutor替换，例如直接在解析线程回调
+ */
+public class ResponseDelivery {
+    private static volatile Executor sExecutor;
+
+    public static Executor get() {
+        Executor executor = sExecutor;
+        return executor != null ? executor : MainThreadExecutor.INSTANCE;
+    }
+
+    /**
+     * @param executor 传null恢复为主线程
+     */
+    public static void setExecutor(Executor executor) {
+        sExecutor = executor;
+    }
+
+    //用到时才创建Handler
+    private static class MainThreadExecutor implements Executor {
+        private static final MainThreadExecutor INSTANCE = new MainThreadExecutor();
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.sophiemarceauqu.lib_network.okhttp.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sophiemarceauqu.lib_network.okhttp.binder.JsonReaders;
+import com.sophiemarceauqu.lib_network.okhttp.binder.ModelBinder;
+import com.sophiemarceauqu.lib_network.okhttp.binder.ModelBinders;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**********************************************************
+ * @文件描述：流式ORM映射，映射规则与ResponseEntityToModule一致(有反射，不能被混淆)
+ * 1直接从响应流读取，不再先读成String再建org.json树
+ * 2加了@JsonModel的类使用编译期生成的绑定类，不走反射
+ * 3其余类的字段信息只反射一次并缓存，后续解析直接查表
+ **********************/
+public class ModelStreamParser {
+    private static final ConcurrentHashMap<Class<?>, ClassBinding> sBindings = new ConcurrentHashMap<>();
+
+    /**
+     * @param reader 响应流，调用方负责关闭
+     * @param clazz  目标实体类
+     * @throws java.io.EOFException 流为空
+     * @throws IOException          读取失败或json格式错误
+     */
+    public static Object parse(Reader reader, Class<?> clazz) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            jsonReader.skipValue();
+            return null;
+        }
+        return readModel(jsonReader, clazz);
+    }
+
+    /**
+     * 读取一个实体，reader必须位于BEGIN_OBJECT，有生成的绑定类优先使用
+     */
+    public static Object readModel(JsonReader reader, Class<?> clazz) throws IOException {
+        ModelBinder<?> binder = ModelBinders.get(clazz);
+        if (binder != null) {
+            return binder.read(reader);
+        }
+        return readObject(reader, getBinding(clazz));
+    }
+
+    private static Object readObject(JsonReader reader, ClassBinding binding) throws IOException {
+        Object moduleObj = binding.newInstance();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            FieldBinding field = binding.fields.get(reader.nextName());
+            if (field == null || reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            Object value = readField(reader, field);
+            if (value != null) {
+                field.set(moduleObj, value);
+            }
+        }
+        reader.endObject();
+        return moduleObj;
+    }
+
+    //返回null表示类型不匹配，字段保持默认值
+    @SuppressWarnings("unchecked")
+    private static Object readField(JsonReader reader, FieldBinding field) throws IOException {
+        switch (field.kind) {
+            case FieldBinding.KIND_PRIMITIVE:
+                String value = JsonReaders.nextPrimitive(reader);
+                return value == null ? null : makeTypeSafeValue(field.type, value);
+            case FieldBinding.KIND_STRING:
+                return JsonReaders.nextString(reader);
+            case FieldBinding.KIND_LIST:
+                if (field.elementType == null) {
+                    reader.skipValue();
+                    return null;
+                }
+                return JsonReaders.nextList(reader, (Class<Object>) field.elementType, null);
+            default:
+                return JsonReaders.nextModel(reader, (Class<Object>) field.type, null);
+        }
+    }
+
+    private static Object makeTypeSafeValue(Class<?> type, String value) {
+        if (int.class == type || Integer.class == type) {
+            return Integer.parseInt(value);
+        } else if (long.class == type || Long.class == type) {
+            return Long.parseLong(value);
+        } else if (short.class == type || Short.class == type) {
+            return Short.parseShort(value);
+        } else if (char.class == type || Character.class == type) {
+            return value.charAt(0);
+        } else if (byte.class == type || Byte.class == type) {
+            return Byte.valueOf(value);
+        } else if (float.class == type || Float.class == type) {
+            return Float.parseFloat(value);
+        } else if (double.class == type || Double.class == type) {
+            return Double.parseDouble(value);
+        } else if (boolean.class == type || Boolean.class == type) {
+            return Boolean.valueOf(value);
+        } else {
+            return value;
+        }
+    }
+
+    private static ClassBinding getBinding(Class<?> clazz) {
+        ClassBinding binding = sBindings.get(clazz);
+        if (binding == null) {
+            //并发时可能重复创建，结果相同，不需要加锁
+            binding = new ClassBinding(clazz);
+            sBindings.put(clazz, binding);
+        }
+        return binding;
+    }
+
+    /**
+     * 一个类的构造方法与全部字段，父类字段在前，子类同名字段覆盖父类
+     */
+    private static class ClassBinding {
+        private final Constructor<?> constructor;
+        private final HashMap<String, FieldBinding> fields = new HashMap<>();
+
+        ClassBinding(Class<?> clazz) {
+            try {
+                constructor = clazz.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(clazz.getName() + " 缺少无参构造方法", e);
+            }
+            collectFields(clazz);
+        }
+
+        private void collectFields(Class<?> clazz) {
+            if (clazz.getSuperclass() != null) {
+                collectFields(clazz.getSuperclass());
+            }
+            for (Field f : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers())) {
+                    continue;
+                }
+                f.setAccessible(true);
+                fields.put(f.getName(), new FieldBinding(f));
+            }
+        }
+
+        Object newInstance() throws IOException {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new IOException("创建实体失败: " + constructor.getDeclaringClass().getName(), e);
+            }
+        }
+    }
+
+    private static class FieldBinding {
+        static final int KIND_PRIMITIVE = 0;
+        static final int KIND_STRING = 1;
+        static final int KIND_LIST = 2;
+        static final int KIND_OBJECT = 3;
+
+        private final Field field;
+        private final Class<?> type;
+        private final int kind;
+        //列表元素类型，泛型不是具体类时为null，与原实现一样不赋值
+        private final Class<?> elementType;
+
+        FieldBinding(Field field) {
+            this.field = field;
+            this.type = field.getType();
+            Class<?> listElement = null;
+            if (type.isPrimitive() || isWrappedPrimitive(type)) {
+                kind = KIND_PRIMITIVE;
+            } else if (type.isAssignableFrom(String.class)) {
+                kind = KIND_STRING;
+            } else if (type.isAssignableFrom(ArrayList.class)) {
+                kind = KIND_LIST;
+                Type generic = field.getGenericType();
+                if (generic instanceof ParameterizedType) {
+                    Type arg = ((ParameterizedType) generic).getActualTypeArguments()[0];
+                    if (arg instanceof Class) {
+                        listElement = (Class<?>) arg;
+                    }
+                }
+            } else {
+                kind = KIND_OBJECT;
+            }
+            elementType = listElement;
+        }
+
+        void set(Object target, Object value) throws IOException {
+            try {
+                field.set(target, value);
+            } catch (IllegalAccessException e) {
+                throw new IOException("字段赋值失败: " + field.getName(), e);
+            }
+        }
+
+        private static boolean isWrappedPrimitive(Class<?> type) {
+            return type == Boolean.class || type == Byte.class || type == Character.class
+                    || type == Short.class || type == Integer.class || type == Long.class
+                    || type == Float.class || type == Double.class;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.sophiemarceauqu.lib_network.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记需要在编译期生成json绑定类的实体
+ * 生成的类名为 实体类名_JsonBinder，与实体同包，解析时不再走反射
+ * 实体必须是顶层类，有非private的无参构造方法，需要解析的字段不能是private
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+}
@@ -0,0 +1,304 @@
+package com.sophiemarceauqu.lib_network.compiler;
+
+import com.sophiemarceauqu.lib_network.annotation.JsonModel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为@JsonModel实体生成 实体类名_JsonBinder
+ * 映射规则与ResponseEntityToModule一致：
+ * 1基本类型及包装类从数字，字符串，布尔转换
+ * 2String字段接收任意值，对象和数组按json文本保存
+ * 3ArrayList字段按泛型元素类型解析，元素类型不是具体类时不赋值
+ * 4其余字段按实体解析，实体加了@JsonModel直接调用其绑定类，否则交给ModelStreamParser
+ */
+public class JsonModelProcessor extends AbstractProcessor {
+    private static final String BINDER_SUFFIX = "_JsonBinder";
+
+    private Elements mElements;
+    private Types mTypes;
+    private Messager mMessager;
+    private TypeMirror mStringType;
+    private TypeMirror mArrayListType;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        mElements = processingEnv.getElementUtils();
+        mTypes = processingEnv.getTypeUtils();
+        mMessager = processingEnv.getMessager();
+        mStringType = mElements.getTypeElement(String.class.getName()).asType();
+        mArrayListType = mTypes.erasure(mElements.getTypeElement("java.util.ArrayList").asType());
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(JsonModel.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(JsonModel.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@JsonModel只能用于类");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (checkModel(type)) {
+                writeBinder(type);
+            }
+        }
+        return true;
+    }
+
+    private boolean checkModel(TypeElement type) {
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL) {
+            error(type, "@JsonModel只支持顶层类");
+            return false;
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@JsonModel不能用于抽象类");
+            return false;
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            error(type, "@JsonModel不能用于泛型类");
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                    error(type, "@JsonModel的无参构造方法不能是private");
+                    return false;
+                }
+                return true;
+            }
+        }
+        error(type, "@JsonModel需要无参构造方法");
+        return false;
+    }
+
+    /**
+     * 父类字段在前，子类同名字段覆盖父类
+     */
+    private Map<String, VariableElement> collectFields(TypeElement model) {
+        Map<String, VariableElement> fields = new LinkedHashMap<>();
+        collectFields(model, model, fields);
+        return fields;
+    }
+
+    private void collectFields(TypeElement model, TypeElement type, Map<String, VariableElement> fields) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            collectFields(model, (TypeElement) ((DeclaredType) superclass).asElement(), fields);
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            if (modifiers.contains(Modifier.FINAL) || !isAccessible(model, type, field)) {
+                //与反射实现不同，生成代码无法给这样的字段赋值，直接报错而不是静默忽略
+                error(field, "@JsonModel " + model.getSimpleName() + "的字段" + name
+                        + "必须可以在同包内赋值(非private，非final，父类在其他包时需为public)");
+                continue;
+            }
+            fields.remove(name);
+            fields.put(name, field);
+        }
+    }
+
+    private boolean isAccessible(TypeElement model, TypeElement owner, VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return mElements.getPackageOf(owner).equals(mElements.getPackageOf(model));
+    }
+
+    private void writeBinder(TypeElement model) {
+        String packageName = mElements.getPackageOf(model).getQualifiedName().toString();
+        String modelName = model.getQualifiedName().toString();
+        String binderName = model.getSimpleName() + BINDER_SUFFIX;
+        Map<String, VariableElement> fields = collectFields(model);
+
+        StringBuilder code = new StringBuilder();
+        code.append("// 由JsonModelProcessor生成，不要修改\n");
+        if (!packageName.isEmpty()) {
+            code.append("package ").append(packageName).append(";\n\n");
+        }
+        code.append("import com.google.gson.stream.JsonReader;\n")
+                .append("import com.google.gson.stream.JsonToken;\n")
+                .append("import com.sophiemarceauqu.lib_network.okhttp.binder.JsonReaders;\n")
+                .append("import com.sophiemarceauqu.lib_network.okhttp.binder.ModelBinder;\n\n")
+                .append("import java.io.IOException;\n\n")
+                .append("public final class ").append(binderName)
+                .append(" implements ModelBinder<").append(modelName).append("> {\n")
+                .append("    public static final ").append(binderName).append(" INSTANCE = new ")
+                .append(binderName).append("();\n\n")
+                .append("    @Override\n")
+                .append("    @SuppressWarnings(\"unchecked\")\n")
+                .append("    public ").append(modelName).append(" read(JsonReader reader) throws IOException {\n")
+                .append("        ").append(modelName).append(" model = new ").append(modelName).append("();\n")
+                .append("        reader.beginObject();\n")
+                .append("        while (reader.hasNext()) {\n")
+                .append("            String name = reader.nextName();\n")
+                .append("            if (reader.peek() == JsonToken.NULL) {\n")
+                .append("                reader.skipValue();\n")
+                .append("                continue;\n")
+                .append("            }\n")
+                .append("            switch (name) {\n");
+        for (Map.Entry<String, VariableElement> entry : fields.entrySet()) {
+            String statement = readStatement(entry.getKey(), entry.getValue().asType());
+            if (statement == null) {
+                continue;
+            }
+            code.append("                case \"").append(entry.getKey()).append("\": {\n")
+                    .append(statement)
+                    .append("                    break;\n")
+                    .append("                }\n");
+        }
+        code.append("                default:\n")
+                .append("                    reader.skipValue();\n")
+                .append("                    break;\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        reader.endObject();\n")
+                .append("        return model;\n")
+                .append("    }\n")
+                .append("}\n");
+
+        String qualifiedBinder = packageName.isEmpty() ? binderName : packageName + "." + binderName;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedBinder, model);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(code.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(model, "生成" + qualifiedBinder + "失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return 无法解析的字段类型返回null，运行时跳过该字段
+     */
+    private String readStatement(String name, TypeMirror type) {
+        String field = "model." + name;
+        String conversion = primitiveConversion(type);
+        if (conversion != null) {
+            return "                    String value = JsonReaders.nextPrimitive(reader);\n"
+                    + "                    if (value != null) {\n"
+                    + "                        " + field + " = " + conversion + ";\n"
+                    + "                    }\n";
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        if (mTypes.isAssignable(mStringType, type)) {
+            return "                    " + field + " = JsonReaders.nextString(reader);\n";
+        }
+        if (mTypes.isAssignable(mArrayListType, mTypes.erasure(type))) {
+            List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+            if (args.size() != 1 || args.get(0).getKind() != TypeKind.DECLARED
+                    || !((DeclaredType) args.get(0)).getTypeArguments().isEmpty()) {
+                return null;
+            }
+            TypeElement element = (TypeElement) ((DeclaredType) args.get(0)).asElement();
+            //字段可能声明为List，Collection等，类型不匹配时不覆盖原值
+            return "                    java.util.ArrayList<" + element.getQualifiedName() + "> list = "
+                    + "JsonReaders.nextList(reader, " + source(element) + ", null);\n"
+                    + "                    if (list != null) {\n"
+                    + "                        " + field + " = list;\n"
+                    + "                    }\n";
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+            return null;
+        }
+        return "                    " + field + " = JsonReaders.nextModel(reader, " + source(element)
+                + ", " + field + ");\n";
+    }
+
+    //加了@JsonModel的直接引用生成的绑定类，否则传Class交给反射实现
+    private String source(TypeElement element) {
+        String name = element.getQualifiedName().toString();
+        if (element.getAnnotation(JsonModel.class) != null
+                && element.getNestingKind() == NestingKind.TOP_LEVEL) {
+            return name + BINDER_SUFFIX + ".INSTANCE";
+        }
+        return mTypes.erasure(element.asType()).toString() + ".class";
+    }
+
+    private String primitiveConversion(TypeMirror type) {
+        TypeKind kind = type.getKind();
+        if (kind == TypeKind.DECLARED) {
+            try {
+                kind = mTypes.unboxedType(type).getKind();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        switch (kind) {
+            case INT:
+                return "Integer.parseInt(value)";
+            case LONG:
+                return "Long.parseLong(value)";
+            case SHORT:
+                return "Short.parseShort(value)";
+            case CHAR:
+                return "value.charAt(0)";
+            case BYTE:
+                return "Byte.parseByte(value)";
+            case FLOAT:
+                return "Float.parseFloat(value)";
+            case DOUBLE:
+                return "Double.parseDouble(value)";
+            case BOOLEAN:
+                return "Boolean.parseBoolean(value)";
+            default:
+                return null;
+        }
+    }
+
+    private void error(Element element, String message) {
+        mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -7,7 +7,7 @@ public final class VideoHelper {
     //SDK全局Context
     private static Context mContext;
 
-    private static void init(Context context) {
+    public static void init(Context context) {
         mContext = context;
         //初始化SDK的时候，初始化realm数据库
     }
@@ -0,0 +1,223 @@
+package com.sophiemarceauqu.qxb_voice.api;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataListener;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestGroup;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
+import com.sophiemarceauqu.qxb_voice.model.friend.BaseFriendModel;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 首页feed数据仓库，stale-while-revalidate：
+ * 1先回调上次成功解析的数据(内存中有则同步回调，否则从本地文件读取)，页面打开即有内容
+ * 2同时发出网络请求，返回后写回本地并再次回调，页面按差异刷新
+ * 3网络失败时保留已回调的本地数据，由hasData告诉页面是否需要兜底
+ * 本地文件在io线程用Gson写入，读取走ModelStreamParser流式解析；回调都在主线程
+ */
+public class FeedRepository {
+    private static final String TAG = "FeedRepository";
+    private static final String STORE_DIR = "feed_store";
+    //实体结构变化时修改，旧文件不再读取
+    private static final int STORE_VERSION = 1;
+    private static final String KEY_FRIEND = "friend";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static FeedRepository sInstance;
+
+    private final File mStoreDir;
+    private final Gson mGson = new Gson();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    //本地文件读写串行执行
+    private final ExecutorService mIoExecutor = Executors.newSingleThreadExecutor();
+    //只在主线程访问
+    private final HashMap<String, Object> mMemory = new HashMap<>();
+
+    /**
+     * feed数据回调，同一次加载可能先后回调本地数据和网络数据
+     */
+    public interface FeedListener<T> {
+        /**
+         * @param fromCache true表示本地数据，之后还会收到网络结果
+         */
+        void onData(T data, boolean fromCache);
+
+        /**
+         * @param hasData 本次加载是否已经回调过本地数据
+         */
+        void onFailure(Object reason, boolean hasData);
+    }
+
+    public static synchronized FeedRepository get(Context context) {
+        if (sInstance == null) {
+            sInstance = new FeedRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private FeedRepository(Context context) {
+        mStoreDir = new File(context.getFilesDir(), STORE_DIR);
+    }
+
+    /**
+     * 加载朋友feed，只能在主线程调用
+     *
+     * @param tag 同RequestCenter.getRequest，传RequestGroup时页面销毁后不再回调
+     */
+    public void loadFriendFeed(final Object tag, FeedListener<BaseFriendModel> listener) {
+        final Load<BaseFriendModel> load = new Load<>(KEY_FRIEND, BaseFriendModel.class, tag, listener);
+        load.start();
+        RequestCenter.requestFriendData(tag, load);
+    }
+
+    /**
+     * 一次加载，本地读取和网络请求的结果都在主线程汇合
+     */
+    private class Load<T> implements DisposeDataListener {
+        private final String mKey;
+        private final Class<T> mClass;
+        private final Object mTag;
+        private final FeedListener<T> mListener;
+        private boolean mHasData;
+        private boolean mNetworkDone;
+
+        Load(String key, Class<T> clazz, Object tag, FeedListener<T> listener) {
+            mKey = key;
+            mClass = clazz;
+            mTag = tag;
+            mListener = listener;
+        }
+
+        void start() {
+            Object memory = mMemory.get(mKey);
+            if (memory != null) {
+                mHasData = true;
+                mListener.onData(mClass.cast(memory), true);
+                return;
+            }
+            mIoExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Object stored = read(mKey, mClass);
+                    if (stored == null) {
+                        return;
+                    }
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            //网络已经先返回，本地数据已经过时
+                            if (mNetworkDone || isCanceled()) {
+                                return;
+                            }
+                            if (!mMemory.containsKey(mKey)) {
+                                mMemory.put(mKey, stored);
+                            }
+                            mHasData = true;
+                            mListener.onData(mClass.cast(stored), true);
+                        }
+                    });
+                }
+            });
+        }
+
+        private boolean isCanceled() {
+            return mTag instanceof RequestGroup && ((RequestGroup) mTag).isCanceled();
+        }
+
+        @Override
+        public void onSuccess(Object responseObj) {
+            mNetworkDone = true;
+            mMemory.put(mKey, responseObj);
+            write(mKey, responseObj);
+            mListener.onData(mClass.cast(responseObj), false);
+        }
+
+        @Override
+        public void onFailure(Object responseObj) {
+            mNetworkDone = true;
+            mListener.onFailure(responseObj, mHasData);
+        }
+    }
+
+    private File storeFile(String key) {
+        return new File(mStoreDir, key + "_v" + STORE_VERSION + ".json");
+    }
+
+    //在io线程执行，文件不存在或无法解析时返回null
+    private Object read(String key, Class<?> clazz) {
+        File file = storeFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        Reader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            return ModelStreamParser.parse(reader, clazz);
+        } catch (Exception e) {
+            Log.w(TAG, "drop unreadable feed store " + file, e);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    //写入临时文件后改名，进程中途被杀也不会留下半个文件
+    //序列化也在io线程执行，不占用主线程；缓存的实体只读，页面展示前会拷贝列表，不会与序列化并发修改
+    private void write(final String key, final Object data) {
+        mIoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!mStoreDir.exists() && !mStoreDir.mkdirs()) {
+                    return;
+                }
+                String json = mGson.toJson(data);
+                File file = storeFile(key);
+                File temp = new File(file.getPath() + ".tmp");
+                Writer writer = null;
+                try {
+                    writer = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+                    writer.write(json);
+                    writer.close();
+                    writer = null;
+                    if (!temp.renameTo(file)) {
+                        temp.delete();
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "failed to write feed store " + file, e);
+                    temp.delete();
+                } finally {
+                    closeQuietly(writer);
+                }
+            }
+        });
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
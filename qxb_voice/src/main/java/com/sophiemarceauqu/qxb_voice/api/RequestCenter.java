@@ -1,6 +1,9 @@
 package com.sophiemarceauqu.qxb_voice.api;
 
+import android.util.Pair;
+
 import com.sophiemarceauqu.lib_network.okhttp.CommonOkHttpClient;
+import com.sophiemarceauqu.lib_network.okhttp.RxHttp;
 import com.sophiemarceauqu.lib_network.okhttp.request.CommonRequest;
 import com.sophiemarceauqu.lib_network.okhttp.request.RequestParams;
 import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
@@ -10,6 +13,10 @@ import com.sophiemarceauqu.qxb_voice.model.discory.BaseRecommandMoreModel;
 import com.sophiemarceauqu.qxb_voice.model.friend.BaseFriendModel;
 import com.sophiemarceauqu.qxb_voice.view.login.user.User;
 
+import io.reactivex.Single;
+import io.reactivex.functions.BiFunction;
+import okhttp3.Request;
+
 public class RequestCenter {
     static class HttpConstants {
         private static final String ROOT_URL = "http://imooc.com/api";
@@ -30,11 +37,33 @@ public class RequestCenter {
         public static String LOGIN = ROOT_URL + "/user/login_phone.php";
     }
 
+    //应用启动时预热连接的地址
+    public static String[] prewarmUrls() {
+        return new String[]{HttpConstants.ROOT_URL};
+    }
+
     //根据参数发送所有post请求
     public static void postRequest(String url, RequestParams params, DisposeDataListener listener, Class<?> clazz) {
         CommonOkHttpClient.post(CommonRequest.createPostRequest(url, params), new DisposeDataHandle(listener, clazz));
     }
 
+    //根据参数发送get请求，可走http缓存和条件请求
+    public static void getRequest(String url, RequestParams params, DisposeDataListener listener, Class<?> clazz) {
+        CommonOkHttpClient.get(CommonRequest.createGetRequest(url, params), new DisposeDataHandle(listener, clazz));
+    }
+
+    //带tag的get请求，tag传RequestGroup时随页面销毁自动取消，否则用cancelRequests(tag)取消
+    public static void getRequest(String url, RequestParams params, DisposeDataListener listener, Class<?> clazz,
+                                  Object tag) {
+        Request request = CommonRequest.createGetRequest(url, params).newBuilder().tag(tag).build();
+        CommonOkHttpClient.get(request, new DisposeDataHandle(listener, clazz));
+    }
+
+    //取消tag对应的全部请求，被取消的请求不再回调
+    public static void cancelRequests(Object tag) {
+        CommonOkHttpClient.cancelTag(tag);
+    }
+
     public static void login(DisposeDataListener listener) {
         RequestParams params = new RequestParams();
         params.put("mb", "18734924592");
@@ -43,14 +72,41 @@ public class RequestCenter {
     }
 
     public static void requestRecommandData(DisposeDataListener listener) {
-        RequestCenter.postRequest(HttpConstants.HOME_RECOMMAND, null, listener, BaseRecommandModel.class);
+        RequestCenter.getRequest(HttpConstants.HOME_RECOMMAND, null, listener, BaseRecommandModel.class);
     }
 
     public static void requestRecommadnMore(DisposeDataListener listener) {
-        RequestCenter.postRequest(HttpConstants.HOME_RECOMMAND_MORE, null, listener, BaseRecommandMoreModel.class);
+        RequestCenter.getRequest(HttpConstants.HOME_RECOMMAND_MORE, null, listener, BaseRecommandMoreModel.class);
     }
 
     public static void requestFriendData(DisposeDataListener listener) {
-        RequestCenter.postRequest(HttpConstants.HOME_FRIEND, null, listener, BaseFriendModel.class);
+        RequestCenter.getRequest(HttpConstants.HOME_FRIEND, null, listener, BaseFriendModel.class);
+    }
+
+    public static void requestFriendData(Object tag, DisposeDataListener listener) {
+        RequestCenter.getRequest(HttpConstants.HOME_FRIEND, null, listener, BaseFriendModel.class, tag);
+    }
+
+    //推荐数据，Rx形式
+    public static Single<BaseRecommandModel> recommandData() {
+        return RxHttp.get(CommonRequest.createGetRequest(HttpConstants.HOME_RECOMMAND, null), BaseRecommandModel.class);
+    }
+
+    //朋友数据，Rx形式，tag用法同getRequest
+    public static Single<BaseFriendModel> friendData(Object tag) {
+        Request request = CommonRequest.createGetRequest(HttpConstants.HOME_FRIEND, null).newBuilder().tag(tag).build();
+        return RxHttp.get(request, BaseFriendModel.class);
+    }
+
+    //推荐和朋友数据并行请求，都返回后一起回调，任一失败即失败
+    public static Single<Pair<BaseRecommandModel, BaseFriendModel>> requestHomeAndFriend(Object tag) {
+        return Single.zip(recommandData(), friendData(tag),
+                new BiFunction<BaseRecommandModel, BaseFriendModel, Pair<BaseRecommandModel, BaseFriendModel>>() {
+                    @Override
+                    public Pair<BaseRecommandModel, BaseFriendModel> apply(BaseRecommandModel recommand,
+                                                                          BaseFriendModel friend) {
+                        return Pair.create(recommand, friend);
+                    }
+                });
     }
 }
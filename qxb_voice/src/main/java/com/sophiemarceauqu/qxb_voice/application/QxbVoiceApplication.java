@@ -2,6 +2,11 @@ package com.sophiemarceauqu.qxb_voice.application;
 
 import android.app.Application;
 
+import com.sophiemarceauqu.lib_network.okhttp.CommonOkHttpClient;
+import com.sophiemarceauqu.lib_network.okhttp.OkHttpConfig;
+import com.sophiemarceauqu.lib_video.app.VideoHelper;
+import com.sophiemarceauqu.qxb_voice.api.RequestCenter;
+
 public class QxbVoiceApplication extends Application {
     private static QxbVoiceApplication mApplication = null;
 
@@ -9,7 +14,11 @@ public class QxbVoiceApplication extends Application {
     public void onCreate() {
         super.onCreate();
         mApplication = this;
+        //网络库初始化，开启http缓存，预热接口域名的连接
+        CommonOkHttpClient.init(this, new OkHttpConfig.Builder()
+                .prewarm(RequestCenter.prewarmUrls())
+                .build());
         //视频SDK初始化
-        VideoH
+        VideoHelper.init(this);
     }
 }
@@ -1,7 +1,9 @@
 package com.sophiemarceauqu.qxb_voice.model.discory;
 
+import com.sophiemarceauqu.lib_network.annotation.JsonModel;
 import com.sophiemarceauqu.qxb_voice.model.BaseModel;
 
+@JsonModel
 public class BaseRecommandMoreModel extends BaseModel {
     public String ecode;
     public String emsg;
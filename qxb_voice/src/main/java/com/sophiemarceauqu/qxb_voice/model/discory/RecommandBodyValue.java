@@ -1,7 +1,9 @@
 package com.sophiemarceauqu.qxb_voice.model.discory;
 
+import com.sophiemarceauqu.lib_network.annotation.JsonModel;
 import com.sophiemarceauqu.qxb_voice.model.BaseModel;
 
+@JsonModel
 public class RecommandBodyValue extends BaseModel {
     public int type;
     public String avatr;
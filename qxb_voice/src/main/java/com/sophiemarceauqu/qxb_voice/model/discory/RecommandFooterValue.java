@@ -1,7 +1,9 @@
 package com.sophiemarceauqu.qxb_voice.model.discory;
 
+import com.sophiemarceauqu.lib_network.annotation.JsonModel;
 import com.sophiemarceauqu.qxb_voice.model.BaseModel;
 
+@JsonModel
 public class RecommandFooterValue extends BaseModel {
     public String info;
     public String imageUrl;
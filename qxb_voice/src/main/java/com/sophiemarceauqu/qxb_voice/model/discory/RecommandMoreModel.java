@@ -1,9 +1,11 @@
 package com.sophiemarceauqu.qxb_voice.model.discory;
 
+import com.sophiemarceauqu.lib_network.annotation.JsonModel;
 import com.sophiemarceauqu.qxb_voice.model.BaseModel;
 
 import java.util.ArrayList;
 
+@JsonModel
 public class RecommandMoreModel extends BaseModel {
     public ArrayList<RecommandBodyValue> list;
 }
@@ -1,10 +1,12 @@
 package com.sophiemarceauqu.qxb_voice.model.friend;
 
+import com.sophiemarceauqu.lib_network.annotation.JsonModel;
 import com.sophiemarceauqu.lib_audio.mediaplayer.model.AudioBean;
 import com.sophiemarceauqu.qxb_voice.model.BaseModel;
 
 import java.util.ArrayList;
 
+@JsonModel
 public class FriendBodyValue extends BaseModel {
     public int type;
     public String avatr;
@@ -1,7 +1,9 @@
 package com.sophiemarceauqu.qxb_voice.model.user;
 
+import com.sophiemarceauqu.lib_network.annotation.JsonModel;
 import com.sophiemarceauqu.qxb_voice.model.BaseModel;
 
+@JsonModel
 public class User extends BaseModel {
 
     public int ecode;
@@ -0,0 +1,57 @@
+package com.sophiemarceauqu.qxb_voice.view.friend;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.sophiemarceauqu.qxb_voice.model.friend.FriendBodyValue;
+
+import java.util.List;
+
+/**
+ * 朋友列表新旧数据的差异，服务端没有id，按类型 + 作者 + 正文识别同一条动态
+ */
+class FriendDiffCallback extends DiffUtil.Callback {
+    private final List<FriendBodyValue> mOld;
+    private final List<FriendBodyValue> mNew;
+
+    FriendDiffCallback(List<FriendBodyValue> oldList, List<FriendBodyValue> newList) {
+        mOld = oldList;
+        mNew = newList;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOld.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNew.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        FriendBodyValue oldItem = mOld.get(oldItemPosition);
+        FriendBodyValue newItem = mNew.get(newItemPosition);
+        return oldItem.type == newItem.type
+                && equals(oldItem.name, newItem.name)
+                && equals(oldItem.text, newItem.text);
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        FriendBodyValue oldItem = mOld.get(oldItemPosition);
+        FriendBodyValue newItem = mNew.get(newItemPosition);
+        return equals(oldItem.avatr, newItem.avatr)
+                && equals(oldItem.fans, newItem.fans)
+                && equals(oldItem.zan, newItem.zan)
+                && equals(oldItem.msg, newItem.msg)
+                && equals(oldItem.videoUr, newItem.videoUr)
+                && equals(oldItem.pics, newItem.pics)
+                && equals(oldItem.audioBean == null ? null : oldItem.audioBean.mUrl,
+                newItem.audioBean == null ? null : newItem.audioBean.mUrl);
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
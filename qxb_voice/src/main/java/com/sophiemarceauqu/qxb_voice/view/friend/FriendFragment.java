@@ -9,14 +9,17 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.sophiemarceauqu.lib_common_ui.recyclerview.wrapper.LoadMoreWrapper;
 import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataListener;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestGroup;
 import com.sophiemarceauqu.lib_network.okhttp.utils.ResponseEntityToModule;
 import com.sophiemarceauqu.qxb_voice.R;
+import com.sophiemarceauqu.qxb_voice.api.FeedRepository;
 import com.sophiemarceauqu.qxb_voice.api.MockData;
 import com.sophiemarceauqu.qxb_voice.api.RequestCenter;
 import com.sophiemarceauqu.qxb_voice.model.friend.BaseFriendModel;
@@ -87,25 +90,33 @@ public class FriendFragment extends Fragment implements SwipeRefreshLayout.OnRef
         loadMore();
     }
 
+    //先显示本地保存的上次数据，网络返回后按差异刷新
     private void requestData() {
-        RequestCenter.requestFriendData(new DisposeDataListener() {
-            @Override
-            public void onSuccess(Object responseObj) {
-                mRecommandData = (BaseFriendModel) responseObj;
-                //更新UI
-                updateView();
-            }
-
-            @Override
-            public void onFailure(Object responseObj) {
-                //显示请求失败View,显示mock数据
-                onSuccess(ResponseEntityToModule.parseJsonToModule(MockData.FRIEND_DATA, BaseFriendModel.class));
-            }
-        });
+        FeedRepository.get(mContext).loadFriendFeed(RequestGroup.of(getViewLifecycleOwner()),
+                new FeedRepository.FeedListener<BaseFriendModel>() {
+                    @Override
+                    public void onData(BaseFriendModel data, boolean fromCache) {
+                        mRecommandData = data;
+                        //更新UI，本地数据还在等网络结果，下拉刷新的进度不结束
+                        updateView(!fromCache);
+                    }
+
+                    @Override
+                    public void onFailure(Object reason, boolean hasData) {
+                        if (hasData) {
+                            //保留已显示的本地数据
+                            mSwipeRefreshLayout.setRefreshing(false);
+                            return;
+                        }
+                        //显示请求失败View,显示mock数据
+                        onData((BaseFriendModel) ResponseEntityToModule.parseJsonToModule(
+                                MockData.FRIEND_DATA, BaseFriendModel.class), false);
+                    }
+                });
     }
 
     private void loadMore() {
-        RequestCenter.requestFriendData(new DisposeDataListener() {
+        RequestCenter.requestFriendData(RequestGroup.of(getViewLifecycleOwner()), new DisposeDataListener() {
             @Override
             public void onSuccess(Object responseObj) {
                 BaseFriendModel moreData = (BaseFriendModel) responseObj;
@@ -124,9 +135,21 @@ public class FriendFragment extends Fragment implements SwipeRefreshLayout.OnRef
     }
 
     //更新UI
-    private void updateView() {
-        mSwipeRefreshLayout.setRefreshing(false);
-        mDatas = mRecommandData.data.list;
+    private void updateView(boolean finished) {
+        if (finished) {
+            mSwipeRefreshLayout.setRefreshing(false);
+        }
+        List<FriendBodyValue> list = mRecommandData.data.list;
+        if (mLoadMoreWrapper != null && mRecycleView.getAdapter() == mLoadMoreWrapper) {
+            //列表已显示，只刷新变化的条目，滚动位置不变
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new FriendDiffCallback(mDatas, list));
+            mDatas.clear();
+            mDatas.addAll(list);
+            diff.dispatchUpdatesTo(mLoadMoreWrapper);
+            return;
+        }
+        //刷新与加载更多可能合并为同一个请求，共享同一个实体，复制一份再追加
+        mDatas = new ArrayList<>(list);
         mAdapter = new FriendRecyclerAdapter(mContext, mDatas);
         //加载更多初始化
         mLoadMoreWrapper = new LoadMoreWrapper(mAdapter);
@@ -1,5 +0,0 @@
-package com.sophiemarceauqu.qxb_voice.view.friend.adapter;
-
-public class FriendRecyclerAdapter extends MultiImte{
-
-}
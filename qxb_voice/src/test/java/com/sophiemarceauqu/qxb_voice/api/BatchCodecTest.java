@@ -0,0 +1,83 @@
+package com.sophiemarceauqu.qxb_voice.api;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.sophiemarceauqu.lib_network.okhttp.batch.BatchCodec;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
+import com.sophiemarceauqu.qxb_voice.model.discory.BaseRecommandModel;
+import com.sophiemarceauqu.qxb_voice.model.friend.BaseFriendModel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.Request;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 批量请求编码后能原样还原，批量响应拆分后与单独解析的结果一致
+ */
+public class BatchCodecTest {
+    private static final String HOME_RECOMMAND = "http://imooc.com/api/product/home_recommand.php";
+    private static final String HOME_FRIEND = "http://imooc.com/api/product/home_friend.php?page=1";
+
+    private final Gson mGson = new Gson();
+
+    @Test
+    public void requestsRoundTrip() throws IOException {
+        List<Request> requests = Arrays.asList(
+                new Request.Builder().url(HOME_RECOMMAND).build(),
+                new Request.Builder().url(HOME_FRIEND).header("Accept-Language", "zh-CN").build());
+        Buffer body = new Buffer();
+        BatchCodec.encodeRequests(requests).writeTo(body);
+
+        List<Request> decoded = BatchCodec.decodeRequests(new InputStreamReader(body.inputStream(), "UTF-8"));
+        assertEquals(2, decoded.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).method(), decoded.get(i).method());
+            assertEquals(requests.get(i).url(), decoded.get(i).url());
+            assertEquals(requests.get(i).headers(), decoded.get(i).headers());
+        }
+    }
+
+    @Test
+    public void responsesDemultiplex() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject().name("responses").beginArray();
+        //顺序与请求不同，按id对应
+        BatchCodec.writeResponse(writer, 1, 200, MockData.FRIEND_DATA);
+        BatchCodec.writeResponse(writer, 0, 200, MockData.HOME_DATA);
+        BatchCodec.writeResponse(writer, 2, 502, "Bad Gateway");
+        writer.endArray().endObject();
+        writer.close();
+
+        List<Class<?>> classes = new ArrayList<>();
+        classes.add(BaseRecommandModel.class);
+        classes.add(BaseFriendModel.class);
+        classes.add(BaseFriendModel.class);
+        classes.add(BaseFriendModel.class);
+        List<BatchCodec.Result> results = BatchCodec.decodeResponses(new StringReader(out.toString()), classes);
+
+        assertEquals(200, results.get(0).status);
+        assertEquals(mGson.toJson(ModelStreamParser.parse(new StringReader(MockData.HOME_DATA), BaseRecommandModel.class)),
+                mGson.toJson(results.get(0).model));
+        assertEquals(200, results.get(1).status);
+        assertEquals(mGson.toJson(ModelStreamParser.parse(new StringReader(MockData.FRIEND_DATA), BaseFriendModel.class)),
+                mGson.toJson(results.get(1).model));
+        assertEquals(502, results.get(2).status);
+        assertNull(results.get(2).model);
+        //服务端没有返回的子请求
+        assertEquals(-1, results.get(3).status);
+        assertNull(results.get(3).model);
+    }
+}
@@ -0,0 +1,65 @@
+package com.sophiemarceauqu.qxb_voice.api;
+
+import com.google.gson.Gson;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ResponseEntityToModule;
+import com.sophiemarceauqu.qxb_voice.model.discory.BaseRecommandModel;
+import com.sophiemarceauqu.qxb_voice.model.discory.BaseRecommandMoreModel;
+import com.sophiemarceauqu.qxb_voice.model.friend.BaseFriendModel;
+import com.sophiemarceauqu.qxb_voice.model.user.User;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 流式解析与原反射解析在MockData上的结果必须一致
+ */
+public class ModelStreamParserTest {
+    private final Gson mGson = new Gson();
+
+    private void assertSameAsReflective(String json, Class<?> clazz) throws IOException {
+        Object expected = ResponseEntityToModule.parseJsonToModule(json, clazz);
+        Object actual = ModelStreamParser.parse(new StringReader(json), clazz);
+        assertNotNull(expected);
+        assertNotNull(actual);
+        assertEquals(mGson.toJson(expected), mGson.toJson(actual));
+    }
+
+    @Test
+    public void homeData() throws IOException {
+        assertSameAsReflective(MockData.HOME_DATA, BaseRecommandModel.class);
+    }
+
+    @Test
+    public void homeMoreData() throws IOException {
+        assertSameAsReflective(MockData.HOME_MORE_DATA, BaseRecommandMoreModel.class);
+    }
+
+    @Test
+    public void friendData() throws IOException {
+        assertSameAsReflective(MockData.FRIEND_DATA, BaseFriendModel.class);
+    }
+
+    @Test
+    public void loginData() throws IOException {
+        assertSameAsReflective(MockData.LOGIN_DATA, User.class);
+    }
+
+    @Test
+    public void lenientValues() throws IOException {
+        //数字与字符串互转，未知字段和null跳过
+        String json = "{\"ecode\":0,\"emsg\":null,\"unknown\":{\"a\":[1,2]},\"data\":{\"list\":[]}}";
+        assertSameAsReflective(json, BaseFriendModel.class);
+    }
+
+    @Test(expected = EOFException.class)
+    public void emptyBody() throws IOException {
+        ModelStreamParser.parse(new StringReader(""), BaseFriendModel.class);
+    }
+}
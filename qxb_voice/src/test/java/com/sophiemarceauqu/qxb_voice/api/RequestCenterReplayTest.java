@@ -0,0 +1,160 @@
+package com.sophiemarceauqu.qxb_voice.api;
+
+import com.google.gson.Gson;
+import com.sophiemarceauqu.lib_network.okhttp.CommonOkHttpClient;
+import com.sophiemarceauqu.lib_network.okhttp.OkHttpConfig;
+import com.sophiemarceauqu.lib_network.okhttp.RetryPolicy;
+import com.sophiemarceauqu.lib_network.okhttp.exception.OkHttpException;
+import com.sophiemarceauqu.lib_network.okhttp.response.ResponseDelivery;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
+import com.sophiemarceauqu.qxb_voice.mock.BlockingListener;
+import com.sophiemarceauqu.qxb_voice.mock.HostRewriteInterceptor;
+import com.sophiemarceauqu.qxb_voice.mock.RecordedDispatcher;
+import com.sophiemarceauqu.qxb_voice.model.discory.BaseRecommandModel;
+import com.sophiemarceauqu.qxb_voice.model.discory.BaseRecommandMoreModel;
+import com.sophiemarceauqu.qxb_voice.model.friend.BaseFriendModel;
+import com.sophiemarceauqu.qxb_voice.view.login.user.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RequestCenter的各接口经过完整的请求链(拦截器，调度，合并，解析)访问本地MockWebServer，
+ * 解析结果与直接解析录制数据一致；注入的延迟和错误按预期生效
+ */
+public class RequestCenterReplayTest {
+    private final Gson mGson = new Gson();
+    private RecordedDispatcher mDispatcher;
+    private MockWebServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mDispatcher = new RecordedDispatcher();
+        mServer = new MockWebServer();
+        mServer.setDispatcher(mDispatcher);
+        mServer.start();
+        ResponseDelivery.setExecutor(BlockingListener.DIRECT);
+        CommonOkHttpClient.init(new OkHttpConfig.Builder()
+                .addInterceptor(new HostRewriteInterceptor(mServer.url("/")))
+                .build());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        CommonOkHttpClient.init(OkHttpConfig.defaults());
+        CommonOkHttpClient.getScheduler().setRetryPolicy(new RetryPolicy());
+        ResponseDelivery.setExecutor(null);
+        mServer.shutdown();
+    }
+
+    private void assertReplayed(String json, Class<?> clazz, Object actual) throws IOException {
+        assertEquals(mGson.toJson(ModelStreamParser.parse(new StringReader(json), clazz)), mGson.toJson(actual));
+    }
+
+    @Test
+    public void recommandData() throws Exception {
+        BlockingListener listener = new BlockingListener();
+        RequestCenter.requestRecommandData(listener);
+        assertReplayed(MockData.HOME_DATA, BaseRecommandModel.class, listener.awaitSuccess());
+        assertEquals("/api/product/home_recommand.php", mServer.takeRequest().getPath());
+    }
+
+    @Test
+    public void recommandMoreData() throws Exception {
+        BlockingListener listener = new BlockingListener();
+        RequestCenter.requestRecommadnMore(listener);
+        assertReplayed(MockData.HOME_MORE_DATA, BaseRecommandMoreModel.class, listener.awaitSuccess());
+    }
+
+    @Test
+    public void friendData() throws Exception {
+        BlockingListener listener = new BlockingListener();
+        RequestCenter.requestFriendData(listener);
+        assertReplayed(MockData.FRIEND_DATA, BaseFriendModel.class, listener.awaitSuccess());
+    }
+
+    @Test
+    public void login() throws Exception {
+        BlockingListener listener = new BlockingListener();
+        RequestCenter.login(listener);
+        assertReplayed(MockData.LOGIN_DATA, User.class, listener.awaitSuccess());
+        RecordedRequest request = mServer.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertTrue(request.getBody().readUtf8().contains("mb=18734924592"));
+    }
+
+    @Test
+    public void injectedLatency() throws Exception {
+        mDispatcher.latency(300, TimeUnit.MILLISECONDS);
+        BlockingListener listener = new BlockingListener();
+        long start = System.nanoTime();
+        RequestCenter.requestFriendData(listener);
+        listener.awaitSuccess();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 300);
+    }
+
+    @Test
+    public void throttledBody() throws Exception {
+        //每100ms发送409字节，录制的朋友数据约5.6KB，至少要13个周期
+        mDispatcher.bandwidth(4096);
+        BlockingListener listener = new BlockingListener();
+        long start = System.nanoTime();
+        RequestCenter.requestFriendData(listener);
+        assertReplayed(MockData.FRIEND_DATA, BaseFriendModel.class, listener.awaitSuccess());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1200);
+    }
+
+    @Test
+    public void injectedErrorRate() throws Exception {
+        //关闭重试，每个请求只对应一次分发；种子固定，失败的请求与分发器的随机序列一一对应
+        CommonOkHttpClient.getScheduler().setRetryPolicy(new RetryPolicy(0, 0, 0));
+        mDispatcher.errors(0.3, 500);
+        Random expected = new Random(0);
+        int failures = 0;
+        int expectedFailures = 0;
+        for (int i = 0; i < 20; i++) {
+            BlockingListener listener = new BlockingListener();
+            RequestCenter.requestFriendData(listener);
+            if (listener.awaitFailed()) {
+                failures++;
+            }
+            if (expected.nextDouble() < 0.3) {
+                expectedFailures++;
+            }
+        }
+        assertEquals(expectedFailures, failures);
+        assertEquals(20, mServer.getRequestCount());
+    }
+
+    @Test
+    public void injectedServerErrorIsRetried() throws Exception {
+        //GET幂等，RequestScheduler重新排队重试2次后才失败
+        mDispatcher.errors(1, 503);
+        BlockingListener listener = new BlockingListener();
+        RequestCenter.requestFriendData(listener);
+        assertTrue(listener.awaitFailure() instanceof OkHttpException);
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void injectedDisconnectFailsPost() throws Exception {
+        //POST不做重试，断开连接回调网络错误
+        mDispatcher.disconnects(1);
+        BlockingListener listener = new BlockingListener();
+        RequestCenter.login(listener);
+        OkHttpException exception = (OkHttpException) listener.awaitFailure();
+        assertEquals(-1, exception.getEcode());
+    }
+}
@@ -0,0 +1,63 @@
+package com.sophiemarceauqu.qxb_voice.benchmark;
+
+import com.sophiemarceauqu.lib_network.okhttp.utils.ModelStreamParser;
+import com.sophiemarceauqu.lib_network.okhttp.utils.ResponseEntityToModule;
+import com.sophiemarceauqu.qxb_voice.api.MockData;
+import com.sophiemarceauqu.qxb_voice.model.discory.BaseRecommandModel;
+import com.sophiemarceauqu.qxb_voice.model.friend.BaseFriendModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 反射解析(ResponseEntityToModule)与流式解析(ModelStreamParser)的耗时与分配
+ * 实体都加了@JsonModel，流式解析走的是编译期生成的绑定类
+ * 运行: ./gradlew :qxb_voice:jmh -Pjmh.include=JsonParseBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonParseBenchmark {
+    @Param({"HOME_DATA", "FRIEND_DATA"})
+    public String data;
+
+    private String mJson;
+    private Class<?> mClass;
+
+    @Setup
+    public void setUp() {
+        if ("HOME_DATA".equals(data)) {
+            mJson = MockData.HOME_DATA;
+            mClass = BaseRecommandModel.class;
+        } else {
+            mJson = MockData.FRIEND_DATA;
+            mClass = BaseFriendModel.class;
+        }
+    }
+
+    @Benchmark
+    public Object reflective() {
+        return ResponseEntityToModule.parseJsonToModule(mJson, mClass);
+    }
+
+    @Benchmark
+    public Object streaming() throws IOException {
+        return ModelStreamParser.parse(new StringReader(mJson), mClass);
+    }
+}
@@ -0,0 +1,80 @@
+package com.sophiemarceauqu.qxb_voice.benchmark;
+
+import com.sophiemarceauqu.lib_network.okhttp.CommonOkHttpClient;
+import com.sophiemarceauqu.lib_network.okhttp.OkHttpConfig;
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataHandle;
+import com.sophiemarceauqu.lib_network.okhttp.request.CommonRequest;
+import com.sophiemarceauqu.lib_network.okhttp.request.RequestParams;
+import com.sophiemarceauqu.lib_network.okhttp.response.ResponseDelivery;
+import com.sophiemarceauqu.qxb_voice.mock.BlockingListener;
+import com.sophiemarceauqu.qxb_voice.mock.RecordedDispatcher;
+import com.sophiemarceauqu.qxb_voice.model.discory.BaseRecommandModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * CommonOkHttpClient + CommonJsonCallback在并发请求下的吞吐和延迟分布
+ * 本地MockWebServer回放录制的首页数据，latencyMillis模拟服务端耗时，结果直接在解析线程回调
+ * 每个请求带不同的参数，不会被RequestCoalescer合并；同一host的并发受RequestScheduler限制(默认5)
+ * 运行: ./gradlew :qxb_voice:jmh -Pjmh.include=NetworkStackBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class NetworkStackBenchmark {
+    private static final String HOME_RECOMMAND = "/api/product/home_recommand.php";
+
+    @Param({"0", "50"})
+    public long latencyMillis;
+
+    private MockWebServer mServer;
+    private String mUrl;
+    private final AtomicLong mSequence = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new RecordedDispatcher().latency(latencyMillis, TimeUnit.MILLISECONDS));
+        mServer.start();
+        mUrl = mServer.url(HOME_RECOMMAND).toString();
+        ResponseDelivery.setExecutor(BlockingListener.DIRECT);
+        CommonOkHttpClient.init(OkHttpConfig.defaults());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ResponseDelivery.setExecutor(null);
+        mServer.shutdown();
+    }
+
+    @Benchmark
+    public Object homeData() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        RequestParams params = new RequestParams("seq", String.valueOf(mSequence.incrementAndGet()));
+        CommonOkHttpClient.get(CommonRequest.createGetRequest(mUrl, params),
+                new DisposeDataHandle(listener, BaseRecommandModel.class));
+        return listener.awaitSuccess();
+    }
+}
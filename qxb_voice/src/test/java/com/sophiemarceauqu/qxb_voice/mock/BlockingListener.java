@@ -0,0 +1,70 @@
+package com.sophiemarceauqu.qxb_voice.mock;
+
+import com.sophiemarceauqu.lib_network.okhttp.listener.DisposeDataListener;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在测试线程上等待请求结果，配合ResponseDelivery.setExecutor(BlockingListener.DIRECT)使用
+ */
+public class BlockingListener implements DisposeDataListener {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    /**
+     * 直接在回调所在线程执行，JVM上没有主线程Looper
+     */
+    public static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final CountDownLatch mLatch = new CountDownLatch(1);
+    private volatile Object mSuccess;
+    private volatile Object mFailure;
+
+    @Override
+    public void onSuccess(Object responseObj) {
+        mSuccess = responseObj;
+        mLatch.countDown();
+    }
+
+    @Override
+    public void onFailure(Object responseObj) {
+        mFailure = responseObj;
+        mLatch.countDown();
+    }
+
+    public Object awaitSuccess() throws InterruptedException {
+        await();
+        if (mFailure != null) {
+            throw new AssertionError("request failed: " + mFailure);
+        }
+        return mSuccess;
+    }
+
+    public Object awaitFailure() throws InterruptedException {
+        await();
+        if (mFailure == null) {
+            throw new AssertionError("request succeeded: " + mSuccess);
+        }
+        return mFailure;
+    }
+
+    /**
+     * @return 请求是否失败，不关心结果是哪一种时使用
+     */
+    public boolean awaitFailed() throws InterruptedException {
+        await();
+        return mFailure != null;
+    }
+
+    private void await() throws InterruptedException {
+        if (!mLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new AssertionError("no callback within " + TIMEOUT_SECONDS + "s");
+        }
+    }
+}
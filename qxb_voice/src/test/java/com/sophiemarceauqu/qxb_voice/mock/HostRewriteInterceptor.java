@@ -0,0 +1,31 @@
+package com.sophiemarceauqu.qxb_voice.mock;
+
+import java.io.IOException;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 把请求的scheme，host和端口改为目标地址，路径和参数不变
+ * RequestCenter中写死的线上地址因此会发往本地的MockWebServer
+ */
+public class HostRewriteInterceptor implements Interceptor {
+    private final HttpUrl mTarget;
+
+    public HostRewriteInterceptor(HttpUrl target) {
+        mTarget = target;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        HttpUrl url = request.url().newBuilder()
+                .scheme(mTarget.scheme())
+                .host(mTarget.host())
+                .port(mTarget.port())
+                .build();
+        return chain.proceed(request.newBuilder().url(url).build());
+    }
+}
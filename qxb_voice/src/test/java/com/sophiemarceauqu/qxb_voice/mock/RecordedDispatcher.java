@@ -0,0 +1,138 @@
+package com.sophiemarceauqu.qxb_voice.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+/**
+ * MockWebServer的分发器，按请求路径回放 test/resources/recorded/路径.json 中录制的响应
+ * 1没有录制的路径返回404，参数不参与匹配
+ * 2可注入首字节延迟，限速，错误码和断开连接，按比例随机发生
+ * 3随机数种子固定，同样的请求顺序得到同样的结果
+ */
+public class RecordedDispatcher extends Dispatcher {
+    private static final String ROOT = "recorded";
+    private static final String JSON = "application/json; charset=utf-8";
+    //限速时每100ms发送一次
+    private static final long THROTTLE_PERIOD_MILLIS = 100;
+
+    private final ConcurrentHashMap<String, byte[]> mRecorded = new ConcurrentHashMap<>();
+    private final Random mRandom;
+    private volatile long mLatencyMillis;
+    private volatile long mBytesPerSecond;
+    private volatile double mErrorRate;
+    private volatile int mErrorCode = 503;
+    private volatile double mDisconnectRate;
+
+    public RecordedDispatcher() {
+        this(0);
+    }
+
+    public RecordedDispatcher(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * 每个响应在返回响应头之前等待的时间
+     */
+    public RecordedDispatcher latency(long latency, TimeUnit unit) {
+        mLatencyMillis = unit.toMillis(latency);
+        return this;
+    }
+
+    /**
+     * @param bytesPerSecond 响应体的发送速度，0表示不限速
+     */
+    public RecordedDispatcher bandwidth(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * @param rate 返回错误码的比例，0~1
+     * @param code 注入的HTTP状态码
+     */
+    public RecordedDispatcher errors(double rate, int code) {
+        mErrorRate = rate;
+        mErrorCode = code;
+        return this;
+    }
+
+    /**
+     * @param rate 读完请求后直接断开连接的比例，0~1
+     */
+    public RecordedDispatcher disconnects(double rate) {
+        mDisconnectRate = rate;
+        return this;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        double roll;
+        synchronized (mRandom) {
+            roll = mRandom.nextDouble();
+        }
+        if (roll < mDisconnectRate) {
+            return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        }
+        MockResponse response;
+        if (roll < mDisconnectRate + mErrorRate) {
+            response = new MockResponse().setResponseCode(mErrorCode).setBody("injected error");
+        } else {
+            byte[] body = recorded(request.getRequestUrl().encodedPath());
+            if (body == null) {
+                response = new MockResponse().setResponseCode(404);
+            } else {
+                response = new MockResponse()
+                        .setHeader("Content-Type", JSON)
+                        .setBody(new Buffer().write(body));
+            }
+        }
+        if (mLatencyMillis > 0) {
+            response.setHeadersDelay(mLatencyMillis, TimeUnit.MILLISECONDS);
+        }
+        if (mBytesPerSecond > 0) {
+            long bytesPerPeriod = Math.max(1, mBytesPerSecond * THROTTLE_PERIOD_MILLIS / 1000);
+            response.throttleBody(bytesPerPeriod, THROTTLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private byte[] recorded(String path) {
+        byte[] body = mRecorded.get(path);
+        if (body != null) {
+            return body;
+        }
+        InputStream in = RecordedDispatcher.class.getClassLoader().getResourceAsStream(ROOT + path + ".json");
+        if (in == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            body = out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to read recorded response " + path, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+        mRecorded.put(path, body);
+        return body;
+    }
+}